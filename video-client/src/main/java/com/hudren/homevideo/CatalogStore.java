@@ -0,0 +1,475 @@
+package com.hudren.homevideo;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.v4.util.AtomicFile;
+import android.util.Log;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+import com.hudren.homevideo.model.CatalogSnapshot;
+import com.hudren.homevideo.model.ModelAdapters;
+import com.hudren.homevideo.model.Title;
+import com.hudren.homevideo.model.TrigramIndex;
+import com.hudren.homevideo.server.TitleReader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Stores the titles catalog in a dedicated file, separate from the shared preferences. The file is
+ * replaced atomically so a partially written catalog is never read, and it is read as a stream.
+ * The file name includes the format version, files written in other formats are discarded.
+ * <p>
+ * A binary snapshot of the ranked catalog is kept alongside for fast loading. It is invalidated
+ * whenever the catalog is replaced, and records the length and modification time of the catalog
+ * file, so a snapshot is only read for the catalog it was written from, even across restarts. The
+ * trigram index used for typo tolerant search is kept and invalidated the same way.
+ * <p>
+ * There is a single store per process, so the generation of the catalog is shared by every
+ * activity instance.
+ */
+public class CatalogStore
+{
+    @SuppressWarnings("unused")
+    private static final String TAG = "CatalogStore";
+
+    /**
+     * The version of the stored catalog format.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String PREFIX = "titles.v";
+
+    private static CatalogStore instance;
+
+    private final File dir;
+    private final AtomicFile file;
+    private final AtomicFile snapshot;
+    private final AtomicFile trigrams;
+
+    private int generation;
+
+    /**
+     * Returns the catalog store of the application.
+     *
+     * @param context The context
+     * @return The store
+     */
+    public static synchronized CatalogStore getInstance( Context context )
+    {
+        if ( instance == null )
+            instance = new CatalogStore( context.getApplicationContext() );
+
+        return instance;
+    }
+
+    private CatalogStore( Context context )
+    {
+        dir = new File( context.getFilesDir(), "catalog" );
+        file = new AtomicFile( new File( dir, PREFIX + FORMAT_VERSION + ".json" ) );
+        snapshot = new AtomicFile( new File( dir, PREFIX + FORMAT_VERSION + ".snapshot" ) );
+        trigrams = new AtomicFile( new File( dir, PREFIX + FORMAT_VERSION + ".trigrams" ) );
+    }
+
+    /**
+     * Returns the directory containing the catalog files.
+     *
+     * @return The catalog directory
+     */
+    public File getDirectory()
+    {
+        return dir;
+    }
+
+    /**
+     * Returns whether a catalog has been stored.
+     *
+     * @return True, if the catalog exists
+     */
+    public boolean exists()
+    {
+        return file.getBaseFile().exists();
+    }
+
+    /**
+     * Reads the stored catalog. A catalog that cannot be parsed is deleted, while other errors
+     * leave it for the next attempt.
+     *
+     * @return The titles, or null if no catalog has been stored
+     * @throws IOException
+     */
+    public synchronized List<Title> read() throws IOException
+    {
+        if ( !exists() )
+            return null;
+
+        FileInputStream inputStream = file.openRead();
+        try
+        {
+            return TitleReader.read( new BufferedReader( new InputStreamReader( inputStream, "UTF-8" ) ) );
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            if ( !isFormatError( e ) )
+                throw e;
+
+            Log.e( TAG, "discarding unreadable catalog", e );
+            clear();
+        }
+        finally
+        {
+            inputStream.close();
+        }
+
+        return null;
+    }
+
+    /**
+     * Moves the catalog saved by previous versions in the shared preferences into the store. A
+     * saved catalog that cannot be parsed is dropped.
+     *
+     * @param prefs The shared preferences of the app
+     * @throws IOException
+     */
+    public synchronized void migrate( SharedPreferences prefs ) throws IOException
+    {
+        String json = prefs.getString( "titles", null );
+
+        if ( json != null )
+        {
+            try
+            {
+                if ( json.length() > 0 && !exists() )
+                    write( TitleReader.read( new StringReader( json ) ) );
+            }
+            catch ( IOException | RuntimeException e )
+            {
+                if ( !isFormatError( e ) )
+                    throw e;
+
+                Log.e( TAG, "discarding unreadable saved titles", e );
+            }
+
+            prefs.edit().remove( "titles" ).apply();
+        }
+    }
+
+    /**
+     * Returns whether the exception was caused by a catalog that cannot be parsed, rather than by
+     * a failure to access the file.
+     *
+     * @param e The exception
+     * @return True, if the catalog is invalid
+     */
+    private static boolean isFormatError( Exception e )
+    {
+        return e instanceof MalformedJsonException || e instanceof EOFException || e instanceof JsonParseException
+                || e instanceof IllegalStateException || e instanceof NumberFormatException;
+    }
+
+    /**
+     * Replaces the stored catalog.
+     *
+     * @param titles The titles
+     * @throws IOException
+     */
+    public synchronized void write( List<Title> titles ) throws IOException
+    {
+        if ( !dir.exists() && !dir.mkdirs() )
+            throw new IOException( "unable to create " + dir );
+
+        Type collectionType = new TypeToken<List<Title>>()
+        {
+        }.getType();
+
+        // Snapshot and index no longer match
+        generation++;
+        snapshot.delete();
+        trigrams.delete();
+
+        FileOutputStream outputStream = file.startWrite();
+        try
+        {
+            JsonWriter writer = new JsonWriter( new BufferedWriter( new OutputStreamWriter( outputStream, "UTF-8" ) ) );
+            ModelAdapters.getGson().toJson( titles, collectionType, writer );
+            writer.flush();
+
+            file.finishWrite( outputStream );
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            file.failWrite( outputStream );
+            throw e;
+        }
+
+        removeStaleVersions();
+    }
+
+    /**
+     * Returns the generation of the stored catalog, which changes every time it is replaced.
+     *
+     * @return The catalog generation
+     */
+    public synchronized int getGeneration()
+    {
+        return generation;
+    }
+
+    /**
+     * Opens the snapshot of the ranked catalog. The titles are read from the returned reader
+     * without holding the store lock, so the titles read first can be processed while the catalog
+     * is being written.
+     *
+     * @return The reader, which must be closed, or null if there is no valid snapshot
+     */
+    public synchronized SnapshotReader openSnapshot()
+    {
+        if ( !snapshot.getBaseFile().exists() )
+            return null;
+
+        File source = file.getBaseFile();
+
+        DataInputStream inputStream = null;
+        try
+        {
+            inputStream = new DataInputStream( new BufferedInputStream( snapshot.openRead(), 65536 ) );
+
+            CatalogSnapshot.Reader reader = CatalogSnapshot.open( inputStream, source.length(), source.lastModified() );
+            if ( reader != null )
+                return new SnapshotReader( inputStream, reader, generation );
+
+            Log.d( TAG, "discarding stale snapshot" );
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            Log.w( TAG, "discarding unreadable snapshot", e );
+        }
+
+        close( inputStream );
+        snapshot.delete();
+
+        return null;
+    }
+
+    /**
+     * Deletes a snapshot that could not be read, unless the catalog has been replaced since.
+     *
+     * @param generation The generation of the catalog when the snapshot was opened
+     */
+    private synchronized void discardSnapshot( int generation )
+    {
+        if ( generation == this.generation )
+            snapshot.delete();
+    }
+
+    private static void close( InputStream inputStream )
+    {
+        if ( inputStream != null )
+        {
+            try
+            {
+                inputStream.close();
+            }
+            catch ( IOException e )
+            {
+                // Do nothing
+            }
+        }
+    }
+
+    /**
+     * Writes the snapshot of the ranked catalog, unless the catalog has been replaced since the
+     * titles were ranked.
+     *
+     * @param titles     The ranked titles
+     * @param generation The generation of the catalog the titles were loaded from
+     * @throws IOException
+     */
+    public synchronized void writeSnapshot( List<Title> titles, int generation ) throws IOException
+    {
+        if ( generation != this.generation || !dir.exists() )
+            return;
+
+        FileOutputStream outputStream = snapshot.startWrite();
+        try
+        {
+            DataOutputStream out = new DataOutputStream( new BufferedOutputStream( outputStream, 65536 ) );
+            File source = file.getBaseFile();
+            CatalogSnapshot.write( out, titles, source.length(), source.lastModified() );
+            out.flush();
+
+            snapshot.finishWrite( outputStream );
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            snapshot.failWrite( outputStream );
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the trigram index of the stored catalog.
+     *
+     * @param titles The titles of the stored catalog
+     * @return The index, or null if there is no index for the titles
+     */
+    public synchronized TrigramIndex readTrigrams( List<Title> titles )
+    {
+        if ( !trigrams.getBaseFile().exists() )
+            return null;
+
+        try
+        {
+            DataInputStream inputStream = new DataInputStream( new BufferedInputStream( trigrams.openRead(), 65536 ) );
+            try
+            {
+                TrigramIndex index = TrigramIndex.read( inputStream, titles );
+                if ( index != null )
+                    return index;
+            }
+            finally
+            {
+                inputStream.close();
+            }
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            Log.w( TAG, "discarding unreadable trigram index", e );
+        }
+
+        trigrams.delete();
+
+        return null;
+    }
+
+    /**
+     * Writes the trigram index, unless the catalog has been replaced since the index was built.
+     *
+     * @param index      The index
+     * @param generation The generation of the catalog the index was built for
+     * @throws IOException
+     */
+    public synchronized void writeTrigrams( TrigramIndex index, int generation ) throws IOException
+    {
+        if ( generation != this.generation || !dir.exists() )
+            return;
+
+        FileOutputStream outputStream = trigrams.startWrite();
+        try
+        {
+            DataOutputStream out = new DataOutputStream( new BufferedOutputStream( outputStream, 65536 ) );
+            index.write( out );
+            out.flush();
+
+            trigrams.finishWrite( outputStream );
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            trigrams.failWrite( outputStream );
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes the stored catalog.
+     */
+    public synchronized void clear()
+    {
+        generation++;
+        snapshot.delete();
+        trigrams.delete();
+        file.delete();
+    }
+
+    /**
+     * Deletes catalog files written in a different format version.
+     */
+    private void removeStaleVersions()
+    {
+        File[] files = dir.listFiles();
+        if ( files != null )
+        {
+            String current = PREFIX + FORMAT_VERSION + ".";
+            for ( File stale : files )
+            {
+                String name = stale.getName();
+                if ( name.startsWith( PREFIX ) && !name.startsWith( current ) && stale.delete() )
+                    Log.d( TAG, "removed stale catalog " + name );
+            }
+        }
+    }
+
+    /**
+     * Reads the titles of the snapshot in chunks. A snapshot that turns out to be unreadable is
+     * discarded.
+     */
+    public class SnapshotReader implements Closeable
+    {
+        private final InputStream inputStream;
+        private final CatalogSnapshot.Reader reader;
+        private final int generation;
+
+        private SnapshotReader( InputStream inputStream, CatalogSnapshot.Reader reader, int generation )
+        {
+            this.inputStream = inputStream;
+            this.reader = reader;
+            this.generation = generation;
+        }
+
+        /**
+         * Returns the number of titles not read yet.
+         *
+         * @return The number of titles
+         */
+        public int getRemaining()
+        {
+            return reader.getRemaining();
+        }
+
+        /**
+         * Reads the next titles of the snapshot.
+         *
+         * @param count The maximum number of titles
+         * @return The titles, or null if the snapshot cannot be read
+         */
+        public List<Title> read( int count )
+        {
+            try
+            {
+                return reader.read( count );
+            }
+            catch ( IOException | RuntimeException e )
+            {
+                Log.w( TAG, "discarding unreadable snapshot", e );
+                discardSnapshot( generation );
+
+                return null;
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            CatalogStore.close( inputStream );
+        }
+    }
+}
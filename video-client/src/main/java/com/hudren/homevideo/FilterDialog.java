@@ -0,0 +1,125 @@
+package com.hudren.homevideo;
+
+import android.app.AlertDialog;
+import android.app.Dialog;
+import android.app.DialogFragment;
+import android.content.DialogInterface;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.ListView;
+
+import com.hudren.homevideo.model.FacetIndex;
+import com.hudren.homevideo.model.FacetIndex.Facet;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Presents the facet values for the user to filter the titles by. The titles are filtered as soon
+ * as a value is checked, and the counts are updated to reflect the selection.
+ */
+public class FilterDialog extends DialogFragment implements AdapterView.OnItemClickListener
+{
+    private TitlesFragment titles;
+
+    private final List<Facet> facets = new ArrayList<>();
+    private final List<String> values = new ArrayList<>();
+    private final List<String> labels = new ArrayList<>();
+
+    private ListView list;
+    private ArrayAdapter<String> adapter;
+
+    @Override
+    public Dialog onCreateDialog( Bundle savedInstanceState )
+    {
+        titles = (TitlesFragment) getTargetFragment();
+
+        AlertDialog.Builder dialog = new AlertDialog.Builder( getActivity() );
+        dialog.setTitle( R.string.action_filter );
+
+        FacetIndex index = titles != null ? titles.getFacets() : null;
+        if ( index != null )
+        {
+            for ( Facet facet : Facet.values() )
+            {
+                for ( String value : index.getValues( facet ) )
+                {
+                    facets.add( facet );
+                    values.add( value );
+                    labels.add( value );
+                }
+            }
+        }
+
+        list = new ListView( getActivity() );
+        list.setChoiceMode( ListView.CHOICE_MODE_MULTIPLE );
+
+        adapter = new ArrayAdapter<>( getActivity(), android.R.layout.simple_list_item_multiple_choice, labels );
+        list.setAdapter( adapter );
+        list.setOnItemClickListener( this );
+
+        updateList();
+
+        dialog.setView( list );
+        dialog.setPositiveButton( R.string.ok, null );
+        dialog.setNeutralButton( R.string.clear_filters, new DialogInterface.OnClickListener()
+        {
+            @Override
+            public void onClick( DialogInterface dialog, int which )
+            {
+                if ( titles != null )
+                    titles.clearFilters();
+            }
+
+        } );
+
+        return dialog.create();
+    }
+
+    @Override
+    public void onItemClick( AdapterView<?> parent, View view, int position, long id )
+    {
+        if ( titles != null )
+        {
+            titles.setFilter( facets.get( position ), values.get( position ), list.isItemChecked( position ) );
+
+            updateList();
+        }
+    }
+
+    /**
+     * Updates the checked values and the counts from the current selection.
+     */
+    private void updateList()
+    {
+        FacetIndex index = titles != null ? titles.getFacets() : null;
+        if ( index == null )
+            return;
+
+        Map<Facet, Set<String>> selection = titles.getSelection();
+
+        Map<Facet, Map<String, Integer>> counts = new EnumMap<>( Facet.class );
+        for ( Facet facet : Facet.values() )
+            counts.put( facet, index.getCounts( selection, facet ) );
+
+        String[] names = getResources().getStringArray( R.array.facet_names );
+        for ( int i = 0; i < values.size(); i++ )
+        {
+            Facet facet = facets.get( i );
+            String value = values.get( i );
+
+            Integer count = counts.get( facet ).get( value );
+            labels.set( i, names[facet.ordinal()] + ": " + value + " (" + (count != null ? count : 0) + ")" );
+
+            Set<String> selected = selection.get( facet );
+            list.setItemChecked( i, selected != null && selected.contains( value ) );
+        }
+
+        adapter.notifyDataSetChanged();
+    }
+}
@@ -1,29 +1,41 @@
 package com.hudren.homevideo;
 
 import android.Manifest;
+import android.app.DownloadManager;
 import android.app.Fragment;
+import android.content.BroadcastReceiver;
+import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
 import android.preference.PreferenceManager;
 import android.support.annotation.NonNull;
 import android.support.v4.app.ActivityCompat;
 import android.support.v4.content.ContextCompat;
+import android.support.v4.view.MenuItemCompat;
+import android.support.v7.widget.SearchView;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.widget.ImageView;
 
-import com.google.gson.FieldNamingPolicy;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
+import com.hudren.homevideo.image.PosterLoader;
+import com.hudren.homevideo.model.FacetIndex;
+import com.hudren.homevideo.model.SearchIndex;
 import com.hudren.homevideo.model.Title;
+import com.hudren.homevideo.model.TrigramIndex;
 import com.hudren.homevideo.model.Video;
 import com.hudren.homevideo.server.VideoServer;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 
 /**
@@ -39,6 +51,64 @@ public class HomeActivity
     private VideoServer server;
     private boolean requestedPermissions;
 
+    /**
+     * The number of titles published before the rest of the catalog has been processed.
+     */
+    private static final int FIRST_CHUNK = 40;
+
+    private CatalogStore catalogStore;
+    private volatile List<Title> catalog;
+    private boolean retrieving;
+
+    /**
+     * The time after the last change to the query before titles that may be misspelled are
+     * searched, in milliseconds.
+     */
+    private static final int FUZZY_SEARCH_DELAY = 250;
+
+    private final SearchIndex searchIndex = new SearchIndex();
+    private volatile TrigramIndex trigramIndex;
+    private volatile FacetIndex facetIndex;
+    private String query;
+
+    private final Handler handler = new Handler();
+    private FuzzySearchTask fuzzySearch;
+
+    /**
+     * Starts searching the titles that may be misspelled once the query has not changed for a
+     * while.
+     */
+    private final Runnable startFuzzySearch = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            if ( query != null && trigramIndex != null )
+            {
+                fuzzySearch = new FuzzySearchTask( HomeActivity.this, query );
+                fuzzySearch.executeOnExecutor( AsyncTask.THREAD_POOL_EXECUTOR );
+            }
+        }
+
+    };
+
+    private volatile boolean destroyed;
+
+    /**
+     * Checks the download status of the titles again when a download completes, so the rows
+     * showing the downloaded titles are rebuilt.
+     */
+    private final BroadcastReceiver downloadReceiver = new BroadcastReceiver()
+    {
+        @Override
+        public void onReceive( Context context, Intent intent )
+        {
+            if ( catalog != null )
+                new IngestTask( HomeActivity.this, catalog ).execute();
+        }
+
+    };
+
     @Override
     protected void onCreate( Bundle savedInstanceState )
     {
@@ -53,8 +123,23 @@ public class HomeActivity
         TitlesFragment titlesFragment = (TitlesFragment) getFragmentManager().findFragmentById( R.id.titles );
         titlesFragment.setMultipane( titleFragment != null );
 
+        catalogStore = CatalogStore.getInstance( this );
+
         server = new VideoServer( this );
         VideoApp.setServer( server );
+
+        registerReceiver( downloadReceiver, new IntentFilter( DownloadManager.ACTION_DOWNLOAD_COMPLETE ) );
+    }
+
+    @Override
+    protected void onDestroy()
+    {
+        destroyed = true;
+        unregisterReceiver( downloadReceiver );
+
+        cancelFuzzySearch();
+
+        super.onDestroy();
     }
 
     protected Fragment getVideoFragment()
@@ -67,20 +152,48 @@ public class HomeActivity
      */
     public void retrieveTitles()
     {
-        SharedPreferences prefs = getSharedPreferences();
-        String json = prefs.getString( "titles", null );
+        if ( !retrieving )
+        {
+            retrieving = true;
+            new IngestTask( this, null ).execute();
+        }
+    }
+
+    /**
+     * Returns the ranked videos. May be called from a background thread, background tasks started
+     * after the videos were retrieved will see them.
+     *
+     * @return The unmodifiable list of videos, or null if none have been loaded
+     */
+    public List<Title> getCatalog()
+    {
+        return catalog;
+    }
 
-        if ( json != null && json.length() > 0 )
-            setTitles( json );
+    /**
+     * Writes the videos to storage. May be called from a background thread.
+     *
+     * @param titles The videos
+     */
+    public void storeTitles( List<Title> titles )
+    {
+        try
+        {
+            catalogStore.write( titles );
+        }
+        catch ( IOException e )
+        {
+            Log.e( TAG, "error writing titles", e );
+        }
     }
 
     /**
-     * Saves and displays the videos.
+     * Displays the videos received from the server.
      *
-     * @param name The server name
-     * @param json The video json
+     * @param name   The server name
+     * @param titles The videos, or null if unchanged
      */
-    public void saveTitles( String name, String json )
+    public void saveTitles( String name, List<Title> titles )
     {
         VideoApp.setConnected( true );
 
@@ -88,14 +201,8 @@ public class HomeActivity
         if ( titlesFragment != null )
             titlesFragment.setConnected( true );
 
-        if ( json != null )
-        {
-            SharedPreferences.Editor editor = getSharedPreferences().edit();
-            editor.putString( "titles", json );
-            editor.apply();
-
-            setTitles( json );
-        }
+        if ( titles != null )
+            new IngestTask( this, titles ).execute();
 
         // Clear shown title
         if ( title == null )
@@ -126,59 +233,141 @@ public class HomeActivity
     }
 
     /**
-     * Displays the specified videos.
+     * Ranks the videos for display. Titles carried over from a previous catalog have already been
+     * ranked and may be displayed, they are copied when their download status has changed.
      *
-     * @param json The video json
+     * @param title The title
+     * @return The ranked title
      */
-    public void setTitles( String json )
+    private static Title rankTitle( Title title )
     {
-        Gson gson = new GsonBuilder().setFieldNamingPolicy( FieldNamingPolicy.LOWER_CASE_WITH_DASHES ).create();
-        Type collectionType = new TypeToken<ArrayList<Title>>()
+        if ( title.isRanked() )
         {
-        }.getType();
+            if ( !isDownloadChanged( title ) )
+                return title;
 
-        try
+            title = title.copy();
+        }
+        else
         {
-            Log.d( TAG, "parsing titles" );
-            List<Title> titles = gson.fromJson( json, collectionType );
+            title.rankVideos();
 
-            Log.d( TAG, "ranking titles" );
-            if ( titles != null )
-            {
-                for ( Title title : titles )
-                {
-                    title.rankVideos();
+            // Sort the containers with highest priority first
+            for ( Video video : title.videos )
+                video.rankContainers();
+        }
 
-                    if ( title.videos != null )
-                    {
-                        for ( Video video : title.videos )
-                        {
-                            // Sort the containers with highest priority first
-                            video.rankContainers();
+        for ( Video video : title.videos )
+            video.setDownloaded( downloadedContainer( video ) != null );
 
-                            video.setDownloaded( downloadedContainer( video ) != null );
-                        }
-                    }
-                }
+        // Alphabetical sorting compares keys
+        title.getCollationKey();
+
+        return title;
+    }
+
+    /**
+     * Returns whether any video of the title has been downloaded or removed since it was ranked.
+     *
+     * @param title The ranked title
+     * @return True, if the download status has changed
+     */
+    private static boolean isDownloadChanged( Title title )
+    {
+        for ( Video video : title.videos )
+            if ( video.isDownloaded() != (downloadedContainer( video ) != null) )
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Shows the titles matching the query instead of all titles.
+     *
+     * @param text The query, or null to show all titles
+     */
+    private void search( String text )
+    {
+        query = text != null && text.trim().length() > 0 ? text : null;
+
+        showSearchResults();
+    }
+
+    /**
+     * Displays the titles matching the current query, or all titles if there is none. The exact
+     * matches are shown at once, the titles that may be misspelled are searched in the background
+     * once the user stops typing.
+     */
+    private void showSearchResults()
+    {
+        cancelFuzzySearch();
+
+        TitlesFragment titlesFragment = (TitlesFragment) getFragmentManager().findFragmentById( R.id.titles );
+        if ( titlesFragment != null )
+        {
+            List<Title> results = null;
+
+            if ( query != null )
+            {
+                results = searchIndex.search( query );
+
+                if ( trigramIndex != null )
+                    handler.postDelayed( startFuzzySearch, FUZZY_SEARCH_DELAY );
             }
 
-            Log.d( TAG, "setting titles" );
-            TitlesFragment titlesFragment = (TitlesFragment) getFragmentManager().findFragmentById( R.id.titles );
-            titlesFragment.setTitles( titles );
+            titlesFragment.setSearchResults( results );
         }
-        catch ( Exception e )
+    }
+
+    /**
+     * Displays the titles matching a query, including those that may be misspelled.
+     *
+     * @param text    The query
+     * @param results The matching titles
+     */
+    private void showSearchResults( String text, List<Title> results )
+    {
+        if ( !text.equals( query ) )
+            return;
+
+        TitlesFragment titlesFragment = (TitlesFragment) getFragmentManager().findFragmentById( R.id.titles );
+        if ( titlesFragment != null )
+            titlesFragment.setSearchResults( results );
+    }
+
+    /**
+     * Stops the search for misspelled titles, if it has not completed.
+     */
+    private void cancelFuzzySearch()
+    {
+        handler.removeCallbacks( startFuzzySearch );
+
+        if ( fuzzySearch != null )
         {
-            Log.e( TAG, "error parsing json", e );
+            fuzzySearch.cancel( false );
+            fuzzySearch = null;
         }
     }
 
+    /**
+     * Displays the specified videos.
+     *
+     * @param titles The videos
+     */
+    private void showTitles( TitleSorter titles )
+    {
+        Log.d( TAG, "setting " + titles.getTitles().size() + " titles" );
+        TitlesFragment titlesFragment = (TitlesFragment) getFragmentManager().findFragmentById( R.id.titles );
+        if ( titlesFragment != null )
+            titlesFragment.setTitles( titles );
+    }
+
     @Override
     protected void onStart()
     {
         super.onStart();
 
-        TitlesFragment titlesFragment = (TitlesFragment) getFragmentManager().findFragmentById( R.id.titles );
-        if ( !titlesFragment.hasTitles() )
+        if ( catalog == null )
             retrieveTitles();
     }
 
@@ -201,6 +390,46 @@ public class HomeActivity
     {
         getMenuInflater().inflate( R.menu.home, menu );
 
+        MenuItem item = menu.findItem( R.id.action_search );
+        if ( item != null )
+        {
+            SearchView searchView = (SearchView) MenuItemCompat.getActionView( item );
+            searchView.setOnQueryTextListener( new SearchView.OnQueryTextListener()
+            {
+                @Override
+                public boolean onQueryTextSubmit( String text )
+                {
+                    search( text );
+                    return false;
+                }
+
+                @Override
+                public boolean onQueryTextChange( String text )
+                {
+                    search( text );
+                    return true;
+                }
+
+            } );
+
+            MenuItemCompat.setOnActionExpandListener( item, new MenuItemCompat.OnActionExpandListener()
+            {
+                @Override
+                public boolean onMenuItemActionExpand( MenuItem item )
+                {
+                    return true;
+                }
+
+                @Override
+                public boolean onMenuItemActionCollapse( MenuItem item )
+                {
+                    search( null );
+                    return true;
+                }
+
+            } );
+        }
+
         return super.onCreateOptionsMenu( menu );
     }
 
@@ -216,6 +445,12 @@ public class HomeActivity
             server.discoverServer();
             return true;
 
+        case R.id.action_filter:
+            TitlesFragment titlesFragment = (TitlesFragment) getFragmentManager().findFragmentById( R.id.titles );
+            if ( titlesFragment != null )
+                titlesFragment.showFilters();
+            return true;
+
         case R.id.action_downloads:
             launchDownloads();
             return true;
@@ -281,4 +516,346 @@ public class HomeActivity
             }
         }
     }
+
+    /**
+     * Loads, ranks and checks the download status of the videos in the background, then publishes
+     * the resulting catalog. When no videos are displayed yet, the first ranked titles are
+     * published early so the list is not empty while the rest are processed, and the posters of
+     * the first rows are loaded from the disk cache before they are shown.
+     * <p>
+     * The task only holds a weak reference to the activity, the results are dropped when the
+     * activity is destroyed before they are published.
+     */
+    private static class IngestTask extends AsyncTask<Void, TitleSorter, List<Title>>
+    {
+        private final WeakReference<HomeActivity> activityRef;
+        private final CatalogStore catalogStore;
+        private final SharedPreferences appPrefs;
+        private final PosterLoader imageLoader;
+        private final SearchIndex searchIndex;
+
+        private final List<Title> titles;
+        private final boolean progressive;
+        private final int generation;
+        private final TitleSorter previous;
+
+        private final TitlesAdapter.SortOrder order;
+        private final int posterWidth;
+        private final int posterHeight;
+        private final int visibleRows;
+
+        /**
+         * The number of titles ranked while the snapshot was read.
+         */
+        private int ranked;
+
+        private FacetIndex facetIndex;
+        private TrigramIndex trigramIndex;
+
+        /**
+         * Creates the task to process the videos.
+         *
+         * @param activity The activity displaying the videos
+         * @param titles   The videos received from the server, or null to load the stored videos
+         */
+        IngestTask( HomeActivity activity, List<Title> titles )
+        {
+            activityRef = new WeakReference<>( activity );
+            catalogStore = activity.catalogStore;
+            appPrefs = activity.getSharedPreferences();
+            imageLoader = NetworkManager.getInstance( activity ).getImageLoader();
+            searchIndex = activity.searchIndex;
+
+            this.titles = titles;
+
+            progressive = activity.catalog == null;
+
+            TitlesFragment titlesFragment = (TitlesFragment) activity.getFragmentManager().findFragmentById( R.id.titles );
+            previous = titlesFragment != null ? titlesFragment.getSorter() : null;
+            generation = catalogStore.getGeneration();
+
+            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences( activity );
+            order = TitlesAdapter.SortOrder.valueOf( prefs.getString( "sort_videos", "MOST_RECENT" ) );
+
+            posterWidth = activity.getResources().getDimensionPixelSize( R.dimen.list_poster_width );
+            posterHeight = activity.getResources().getDimensionPixelSize( R.dimen.list_poster_height );
+            visibleRows = activity.getResources().getDisplayMetrics().heightPixels / posterHeight + 1;
+        }
+
+        /**
+         * Returns the activity, unless it has been destroyed since the task was started.
+         *
+         * @return The activity, or null
+         */
+        private HomeActivity getActivity()
+        {
+            HomeActivity activity = activityRef.get();
+            return activity != null && !activity.destroyed ? activity : null;
+        }
+
+        /**
+         * Loads the cached posters of the rows shown first into the memory cache.
+         *
+         * @param sorter The titles about to be shown
+         */
+        private void prewarmPosters( TitleSorter sorter )
+        {
+            int[] permutation = sorter.getPermutation( order );
+
+            List<String> urls = new ArrayList<>( visibleRows );
+            for ( int i = 0; i < permutation.length && urls.size() < visibleRows; i++ )
+            {
+                String poster = sorter.getRow( permutation[i] ).getPoster();
+                if ( poster != null )
+                    urls.add( poster );
+            }
+
+            imageLoader.prewarm( urls, posterWidth, posterHeight, ImageView.ScaleType.CENTER_INSIDE );
+        }
+
+        /**
+         * Publishes the first ranked titles, before the rest of the catalog has been processed.
+         *
+         * @param titles The titles, starting with the first chunk
+         */
+        private void publishChunk( List<Title> titles )
+        {
+            TitleSorter first = new TitleSorter( Collections.unmodifiableList( new ArrayList<>( titles.subList( 0, FIRST_CHUNK ) ) ), null ).prepare();
+            prewarmPosters( first );
+            publishProgress( first );
+        }
+
+        /**
+         * Reads the snapshot of the ranked catalog. The first titles are published before the
+         * rest are read, they are ranked and their posters loaded without holding the store lock.
+         *
+         * @return The titles, or null if there is no readable snapshot
+         */
+        private List<Title> readSnapshot()
+        {
+            CatalogStore.SnapshotReader reader = catalogStore.openSnapshot();
+            if ( reader == null )
+                return null;
+
+            try
+            {
+                List<Title> titles = new ArrayList<>( reader.getRemaining() );
+
+                if ( progressive && reader.getRemaining() > FIRST_CHUNK )
+                {
+                    List<Title> first = reader.read( FIRST_CHUNK );
+                    if ( first == null )
+                        return null;
+
+                    // Shown while the rest of the snapshot is decoded
+                    for ( Title title : first )
+                        titles.add( rankTitle( title ) );
+
+                    ranked = titles.size();
+                    publishChunk( titles );
+                }
+
+                List<Title> rest = reader.read( reader.getRemaining() );
+                if ( rest == null )
+                    return null;
+
+                titles.addAll( rest );
+                return titles;
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+
+        /**
+         * Makes the catalog available to the background tasks started from now on.
+         *
+         * @param result The ranked titles
+         * @return False, if the activity has been destroyed
+         */
+        private boolean publishCatalog( List<Title> result )
+        {
+            HomeActivity activity = getActivity();
+            if ( activity == null )
+                return false;
+
+            activity.catalog = result;
+            return true;
+        }
+
+        @Override
+        protected List<Title> doInBackground( Void... params )
+        {
+            List<Title> titles = this.titles;
+            boolean snapshot = false;
+
+            try
+            {
+                if ( titles == null )
+                {
+                    catalogStore.migrate( appPrefs );
+
+                    // Ranked snapshot is fastest
+                    Log.d( TAG, "reading snapshot" );
+                    titles = readSnapshot();
+                    snapshot = titles != null;
+
+                    if ( titles == null )
+                    {
+                        // Titles read from the catalog are all ranked below
+                        ranked = 0;
+
+                        Log.d( TAG, "reading titles" );
+                        titles = catalogStore.read();
+                    }
+                }
+            }
+            catch ( IOException e )
+            {
+                // Unreadable for now, the store discards a catalog it cannot parse
+                Log.e( TAG, "error reading titles", e );
+            }
+
+            // An empty store is not a catalog, but the server may have removed every title
+            if ( titles == null || (titles.isEmpty() && this.titles == null) )
+                return null;
+
+            // Titles carried over from the displayed catalog are replaced, not modified
+            titles = new ArrayList<>( titles );
+
+            Log.d( TAG, "ranking titles" );
+            int count = titles.size();
+            for ( int i = ranked; i < count; i++ )
+            {
+                titles.set( i, rankTitle( titles.get( i ) ) );
+
+                if ( progressive && i + 1 == FIRST_CHUNK && count > FIRST_CHUNK )
+                    publishChunk( titles );
+            }
+
+            List<Title> result = Collections.unmodifiableList( titles );
+
+            if ( !publishCatalog( result ) )
+                return null;
+
+            // Show the titles while the search indexes are prepared, only changed titles are sorted
+            TitleSorter sorter = new TitleSorter( result, previous ).prepare();
+            if ( progressive && count <= FIRST_CHUNK )
+                prewarmPosters( sorter );
+            publishProgress( sorter );
+
+            // Only titles that changed are indexed again
+            searchIndex.update( result );
+            facetIndex = new FacetIndex( result );
+
+            TrigramIndex index = catalogStore.readTrigrams( result );
+            if ( index == null )
+            {
+                Log.d( TAG, "building trigram index" );
+                index = TrigramIndex.build( result );
+
+                try
+                {
+                    catalogStore.writeTrigrams( index, generation );
+                }
+                catch ( IOException e )
+                {
+                    Log.e( TAG, "error writing trigram index", e );
+                }
+            }
+            trigramIndex = index;
+
+            if ( !snapshot )
+            {
+                try
+                {
+                    catalogStore.writeSnapshot( result, generation );
+                }
+                catch ( IOException e )
+                {
+                    Log.e( TAG, "error writing snapshot", e );
+                }
+            }
+
+            return result;
+        }
+
+        @Override
+        protected void onProgressUpdate( TitleSorter... sorters )
+        {
+            HomeActivity activity = getActivity();
+            if ( activity != null )
+                activity.showTitles( sorters[0] );
+        }
+
+        @Override
+        protected void onPostExecute( List<Title> result )
+        {
+            HomeActivity activity = getActivity();
+            if ( activity == null )
+                return;
+
+            if ( titles == null )
+                activity.retrieving = false;
+
+            // Titles have already been shown
+            if ( result != null )
+            {
+                activity.trigramIndex = trigramIndex;
+                activity.facetIndex = facetIndex;
+
+                TitlesFragment titlesFragment = (TitlesFragment) activity.getFragmentManager().findFragmentById( R.id.titles );
+                if ( titlesFragment != null )
+                    titlesFragment.setFacets( facetIndex );
+
+                if ( activity.query != null )
+                    activity.showSearchResults();
+            }
+        }
+    }
+
+    /**
+     * Searches the titles matching a query in the background, the exact matches followed by the
+     * titles that may be misspelled. The results are dropped if the query has changed or the
+     * activity has been destroyed by the time they are ready.
+     */
+    private static class FuzzySearchTask extends AsyncTask<Void, Void, List<Title>>
+    {
+        private final WeakReference<HomeActivity> activityRef;
+        private final SearchIndex searchIndex;
+        private final TrigramIndex trigramIndex;
+        private final String query;
+
+        FuzzySearchTask( HomeActivity activity, String query )
+        {
+            activityRef = new WeakReference<>( activity );
+            searchIndex = activity.searchIndex;
+            trigramIndex = activity.trigramIndex;
+
+            this.query = query;
+        }
+
+        @Override
+        protected List<Title> doInBackground( Void... params )
+        {
+            // Exact matches first, followed by titles that may be misspelled
+            LinkedHashSet<Title> matches = new LinkedHashSet<>( searchIndex.search( query ) );
+            if ( !isCancelled() )
+                matches.addAll( trigramIndex.search( query ) );
+
+            return new ArrayList<>( matches );
+        }
+
+        @Override
+        protected void onPostExecute( List<Title> results )
+        {
+            HomeActivity activity = activityRef.get();
+            if ( activity != null && !activity.destroyed && activity.fuzzySearch == this )
+            {
+                activity.fuzzySearch = null;
+                activity.showSearchResults( query, results );
+            }
+        }
+    }
 }
@@ -1,45 +1,47 @@
 package com.hudren.homevideo;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.util.LruCache;
 
 import com.android.volley.RequestQueue;
-import com.android.volley.toolbox.ImageLoader;
-import com.android.volley.toolbox.Volley;
+import com.android.volley.toolbox.BasicNetwork;
+import com.android.volley.toolbox.HurlStack;
+import com.hudren.homevideo.image.BitmapCache;
+import com.hudren.homevideo.image.BitmapPool;
+import com.hudren.homevideo.image.PosterCache;
+import com.hudren.homevideo.image.PosterLoader;
+
+import java.io.File;
 
 /**
  * The network manager provides a singleton instance for a network request queue used for loading
- * images using a simple memory-based cache.
+ * images using a memory cache bounded by the size of the bitmaps. Bitmaps evicted from the cache
+ * are pooled for decoding other images. Downloaded images are kept in a dedicated disk cache.
  */
 public class NetworkManager
 {
+    private static final String POSTER_CACHE_DIR = "posters";
+
+    /**
+     * The maximum size of the poster disk cache.
+     */
+    private static final int POSTER_CACHE_SIZE = 32 * 1024 * 1024;
+
     private static NetworkManager instance;
 
     private RequestQueue requestQueue;
-    private ImageLoader imageLoader;
+    private BitmapPool bitmapPool;
+    private BitmapCache bitmapCache;
+    private PosterLoader imageLoader;
 
     private NetworkManager( Context context )
     {
-        requestQueue = Volley.newRequestQueue( context );
-
-        imageLoader = new ImageLoader( requestQueue,
-                new ImageLoader.ImageCache()
-                {
-                    private final LruCache<String, Bitmap> cache = new LruCache<>( 200 );
-
-                    @Override
-                    public Bitmap getBitmap( String url )
-                    {
-                        return cache.get( url );
-                    }
-
-                    @Override
-                    public void putBitmap( String url, Bitmap bitmap )
-                    {
-                        cache.put( url, bitmap );
-                    }
-                } );
+        File dir = new File( context.getCacheDir(), POSTER_CACHE_DIR );
+        requestQueue = new RequestQueue( new PosterCache( dir, POSTER_CACHE_SIZE ), new BasicNetwork( new HurlStack() ) );
+        requestQueue.start();
+
+        bitmapPool = new BitmapPool( BitmapCache.getDefaultSize( context ) / 4 );
+        bitmapCache = new BitmapCache( context, bitmapPool );
+        imageLoader = new PosterLoader( requestQueue, bitmapCache, bitmapPool );
     }
 
     public static synchronized NetworkManager getInstance( Context context )
@@ -55,8 +57,18 @@ public class NetworkManager
         return requestQueue;
     }
 
-    public ImageLoader getImageLoader()
+    public PosterLoader getImageLoader()
     {
         return imageLoader;
     }
+
+    public BitmapCache getBitmapCache()
+    {
+        return bitmapCache;
+    }
+
+    public BitmapPool getBitmapPool()
+    {
+        return bitmapPool;
+    }
 }
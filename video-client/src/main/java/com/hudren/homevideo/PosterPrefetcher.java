@@ -0,0 +1,162 @@
+package com.hudren.homevideo;
+
+import android.content.Context;
+import android.database.DataSetObserver;
+import android.os.SystemClock;
+import android.widget.AbsListView;
+import android.widget.ImageView;
+
+import com.hudren.homevideo.image.PosterLoader;
+
+/**
+ * Prefetches the posters of the rows about to scroll into view, so they are already in the memory
+ * cache when the rows are shown. The number of rows prefetched ahead grows with the scrolling
+ * speed, covering about the rows that will appear within the look ahead time.
+ */
+class PosterPrefetcher implements AbsListView.OnScrollListener
+{
+    /**
+     * How far ahead to prefetch, in milliseconds of scrolling at the current speed.
+     */
+    private static final long LOOK_AHEAD_MS = 750;
+
+    /**
+     * The number of rows prefetched when scrolling slowly or not at all.
+     */
+    private static final int MIN_ROWS = 4;
+
+    /**
+     * The maximum number of rows prefetched, which also limits the requests made by a fling.
+     */
+    private static final int MAX_ROWS = 40;
+
+    private final TitlesAdapter adapter;
+    private final int posterWidth;
+    private final int posterHeight;
+
+    private int lastFirst = -1;
+    private long lastTime;
+
+    /**
+     * The scrolling speed in rows per second, negative when scrolling up.
+     */
+    private float velocity;
+    private int direction = 1;
+
+    /**
+     * The range of rows last prefetched.
+     */
+    private int prefetchStart;
+    private int prefetchEnd;
+
+    PosterPrefetcher( Context context, TitlesAdapter adapter )
+    {
+        this.adapter = adapter;
+
+        posterWidth = context.getResources().getDimensionPixelSize( R.dimen.list_poster_width );
+        posterHeight = context.getResources().getDimensionPixelSize( R.dimen.list_poster_height );
+
+        adapter.registerDataSetObserver( new DataSetObserver()
+        {
+            @Override
+            public void onChanged()
+            {
+                // The rows may show other titles
+                prefetchStart = 0;
+                prefetchEnd = 0;
+            }
+
+        } );
+    }
+
+    @Override
+    public void onScrollStateChanged( AbsListView view, int scrollState )
+    {
+        if ( scrollState == SCROLL_STATE_IDLE )
+        {
+            velocity = 0;
+            prefetch( view.getFirstVisiblePosition(), view.getChildCount(), adapter.getCount() );
+        }
+    }
+
+    @Override
+    public void onScroll( AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount )
+    {
+        long now = SystemClock.uptimeMillis();
+
+        if ( lastFirst >= 0 && firstVisibleItem != lastFirst )
+        {
+            long elapsed = Math.max( 1, now - lastTime );
+            float current = (firstVisibleItem - lastFirst) * 1000f / elapsed;
+
+            // Smooth the speed over the last few rows
+            velocity = velocity == 0 ? current : (velocity + current) / 2;
+
+            int moving = firstVisibleItem > lastFirst ? 1 : -1;
+            if ( moving != direction )
+            {
+                direction = moving;
+                cancel();
+            }
+        }
+
+        if ( firstVisibleItem != lastFirst )
+        {
+            lastFirst = firstVisibleItem;
+            lastTime = now;
+
+            prefetch( firstVisibleItem, visibleItemCount, totalItemCount );
+        }
+    }
+
+    /**
+     * Prefetches the posters of the rows following the visible rows in the direction of scrolling.
+     *
+     * @param first   The first visible row
+     * @param visible The number of visible rows
+     * @param total   The number of rows
+     */
+    private void prefetch( int first, int visible, int total )
+    {
+        PosterLoader loader = VideoApp.getImageLoader();
+        if ( loader == null || visible == 0 )
+            return;
+
+        int rows = Math.round( Math.abs( velocity ) * LOOK_AHEAD_MS / 1000 );
+        rows = Math.min( MAX_ROWS, Math.max( MIN_ROWS, rows ) );
+
+        int start = direction > 0 ? first + visible : first - rows;
+        int end = direction > 0 ? first + visible + rows : first;
+        start = Math.max( 0, start );
+        end = Math.min( total, end );
+
+        // Rows already requested
+        if ( start >= prefetchStart && end <= prefetchEnd )
+            return;
+
+        for ( int i = start; i < end; i++ )
+        {
+            int position = direction > 0 ? i : end - 1 - (i - start);
+
+            String poster = adapter.getPoster( position );
+            if ( poster != null )
+                loader.prefetch( poster, posterWidth, posterHeight, ImageView.ScaleType.CENTER_INSIDE );
+        }
+
+        prefetchStart = start;
+        prefetchEnd = end;
+    }
+
+    /**
+     * Cancels the posters being prefetched, which are no longer ahead after changing direction.
+     */
+    private void cancel()
+    {
+        PosterLoader loader = VideoApp.getImageLoader();
+        if ( loader != null )
+            loader.cancelPrefetch();
+
+        prefetchStart = 0;
+        prefetchEnd = 0;
+    }
+}
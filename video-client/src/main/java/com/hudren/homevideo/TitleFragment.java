@@ -23,7 +23,7 @@ import android.widget.TableLayout;
 import android.widget.TableRow;
 import android.widget.TextView;
 
-import com.android.volley.toolbox.NetworkImageView;
+import com.hudren.homevideo.image.PosterView;
 import com.hudren.homevideo.model.Container;
 import com.hudren.homevideo.model.Episode;
 import com.hudren.homevideo.model.Info;
@@ -133,12 +133,13 @@ public class TitleFragment extends Fragment
             if ( plot != null )
                 plot.setText( info.plot );
 
-            final NetworkImageView poster = (NetworkImageView) rootView.findViewById( R.id.poster );
+            final PosterView poster = (PosterView) rootView.findViewById( R.id.poster );
             if ( poster != null )
             {
                 if ( title.poster != null )
                 {
-                    poster.setImageUrl( serverUrl( title.poster ), VideoApp.getImageLoader() );
+                    // The cached thumbnail is shown until the poster is loaded
+                    poster.setImageUrl( serverUrl( title.poster ), serverUrl( title.thumb ), VideoApp.getImageLoader() );
 
                     if ( info.plot != null )
                     {
@@ -255,7 +256,7 @@ public class TitleFragment extends Fragment
             {
                 final ListView list = (ListView) rootView.findViewById( R.id.episodes );
 
-                adapter = new EpisodeAdapter( getActivity(), android.R.layout.simple_list_item_1, episodes );
+                adapter = new EpisodeAdapter( getActivity(), android.R.layout.simple_list_item_1, new ArrayList<>( episodes ) );
                 list.setAdapter( adapter );
 
                 list.setChoiceMode( ListView.CHOICE_MODE_SINGLE );
@@ -309,7 +310,7 @@ public class TitleFragment extends Fragment
             selectVideo( title.getFirstVideo() );
     }
 
-    private void makeSpan( NetworkImageView poster, TextView plot, String text )
+    private void makeSpan( PosterView poster, TextView plot, String text )
     {
         int height = poster.getMeasuredHeight();
         int width = poster.getMeasuredWidth() + scale( 16 );
@@ -0,0 +1,172 @@
+package com.hudren.homevideo;
+
+import com.hudren.homevideo.model.FormatUtils;
+import com.hudren.homevideo.model.Info;
+import com.hudren.homevideo.model.Season;
+import com.hudren.homevideo.model.Title;
+import com.hudren.homevideo.model.Video;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.hudren.homevideo.VideoApp.serverUrl;
+
+/**
+ * The text and indicators displayed in a row of the titles list. Rows are built in the background
+ * for each catalog, so binding a row only copies these fields into the views.
+ * <p>
+ * The poster urls depend on the server url, which may only become known or change after the rows
+ * were built. They are resolved when first bound and again only after the server url has changed.
+ */
+class TitleRow
+{
+    final Title title;
+
+    final String text;
+    final String details;
+
+    /**
+     * The poster and thumbnail as given by the server, usually relative to the server url.
+     */
+    private final String posterPath;
+    private final String thumbPath;
+
+    private volatile Urls urls;
+
+    /**
+     * Whether the title has a single video, the indicators only apply to single videos.
+     */
+    final boolean single;
+
+    final boolean streamable;
+    final boolean downloadable;
+    final boolean castable;
+    final boolean downloaded;
+
+    /**
+     * Creates the row for a ranked title.
+     *
+     * @param title        The title
+     * @param userLanguage The display language of the user, which is not shown
+     */
+    TitleRow( Title title, String userLanguage )
+    {
+        this.title = title;
+
+        Video video = title.getVideo();
+
+        text = title.getTitle();
+        details = details( title, video, userLanguage );
+        posterPath = title.poster != null ? title.poster : title.thumb;
+        thumbPath = title.poster != null ? title.thumb : null;
+
+        single = video != null;
+        streamable = video != null && video.shouldStream( false );
+        downloadable = video != null && video.canDownload();
+        castable = video != null && video.canCast();
+        downloaded = video != null && video.isDownloaded();
+    }
+
+    /**
+     * Returns the url of the poster, or of the thumbnail if the title has no poster.
+     *
+     * @return The url, or null if the title has neither
+     */
+    String getPoster()
+    {
+        return resolve().poster;
+    }
+
+    /**
+     * Returns the url of the thumbnail shown while the poster is loading.
+     *
+     * @return The url, or null
+     */
+    String getThumb()
+    {
+        return resolve().thumb;
+    }
+
+    /**
+     * Returns the urls on the current server, resolving them only if the server url changed.
+     *
+     * @return The urls
+     */
+    private Urls resolve()
+    {
+        String base = VideoApp.getServerUrl();
+
+        Urls urls = this.urls;
+        if ( urls == null || (base != null ? !base.equals( urls.base ) : urls.base != null) )
+        {
+            urls = new Urls( base, posterPath, thumbPath );
+            this.urls = urls;
+        }
+
+        return urls;
+    }
+
+    private static String details( Title title, Video video, String userLanguage )
+    {
+        Info info = title.info;
+        if ( info == null )
+            return "";
+
+        StringBuilder details = new StringBuilder();
+        if ( video != null )
+        {
+            if ( info.year > 0 )
+                details.append( info.year );
+
+            String language = video.getLanguage();
+            if ( language != null && language.length() > 0 && !language.equals( userLanguage ) )
+                details.append( "    " ).append( language );
+
+            if ( info.rated != null && info.rated.length() > 0 )
+                details.append( "    " ).append( info.rated );
+
+            if ( info.runtime != null && info.runtime.length() > 0 )
+                details.append( "    " ).append( info.runtime );
+        }
+        else
+        {
+            if ( !title.hasSeasons() && info.year > 0 )
+                details.append( info.year );
+
+            List<Season> seasons = title.getSeasons();
+            int count = seasons.size();
+            if ( count > 0 )
+            {
+                List<Integer> numbers = new ArrayList<>( count );
+                for ( Season season : seasons )
+                    numbers.add( season.index );
+
+                details.setLength( 0 );
+                details.append( count == 1 ? "Season " : "Seasons " ).append( FormatUtils.ranges( numbers ) );
+            }
+
+            if ( info.rated != null )
+                details.append( "    " ).append( info.rated );
+        }
+
+        return details.toString().trim();
+    }
+
+    /**
+     * The poster urls resolved against a server url.
+     */
+    private static class Urls
+    {
+        final String base;
+        final String poster;
+        final String thumb;
+
+        Urls( String base, String posterPath, String thumbPath )
+        {
+            this.base = base;
+
+            poster = serverUrl( base, posterPath );
+            thumb = serverUrl( base, thumbPath );
+        }
+    }
+}
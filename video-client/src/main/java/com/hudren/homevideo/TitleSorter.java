@@ -0,0 +1,436 @@
+package com.hudren.homevideo;
+
+import com.hudren.homevideo.model.Title;
+
+import java.text.CollationKey;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Sorts the titles catalog in each of the sort orders. The sort keys are computed once per catalog
+ * and the resulting permutation is cached for every order, so switching between orders does not
+ * sort again.
+ * <p>
+ * A sorter for an updated catalog reuses the permutations of the previous one. Titles whose keys
+ * did not change keep their relative positions and only the changed titles are sorted and merged.
+ * Titles carried over also keep their item ids, which are only held for the current catalog.
+ * <p>
+ * Alphabetical order compares the collation keys of the titles, which are grouped into sections
+ * by their first letter for fast scrolling.
+ * <p>
+ * A sorter is prepared in the background and is not modified once it has been prepared, so it can
+ * then be used from any thread. Preparing also builds the displayed row of every title.
+ */
+class TitleSorter
+{
+    private final List<Title> titles;
+
+    private final String[] ids;
+    private final String[] sorting;
+    private final CollationKey[] keys;
+    private final long[] modified;
+
+    /**
+     * The index of each title id.
+     */
+    private final Map<String, Integer> ordinals;
+
+    /**
+     * The stable item ids of the titles, kept by titles carried over from the previous catalog.
+     */
+    private final long[] itemIds;
+    private final long nextItemId;
+
+    private final Map<TitlesAdapter.SortOrder, int[]> permutations = new EnumMap<>( TitlesAdapter.SortOrder.class );
+
+    private String[] sections;
+    private int[] sectionPositions;
+
+    private TitleRow[] rows;
+    private Map<Title, TitleRow> titleRows;
+
+    /**
+     * Creates a sorter for the catalog.
+     *
+     * @param titles   The titles, which must not be modified
+     * @param previous The sorter for the previous catalog, or null
+     */
+    TitleSorter( List<Title> titles, TitleSorter previous )
+    {
+        this.titles = titles;
+
+        int count = titles.size();
+        ids = new String[count];
+        sorting = new String[count];
+        keys = new CollationKey[count];
+        modified = new long[count];
+        ordinals = new HashMap<>( count * 2 );
+
+        for ( int i = 0; i < count; i++ )
+        {
+            Title title = titles.get( i );
+
+            ids[i] = title.id;
+            sorting[i] = title.getSortingTitle();
+            keys[i] = title.getCollationKey();
+            modified[i] = title.getModified();
+
+            if ( !ordinals.containsKey( title.id ) )
+                ordinals.put( title.id, i );
+        }
+
+        itemIds = new long[count];
+        long next = previous != null ? previous.nextItemId : 0;
+        boolean[] taken = previous != null ? new boolean[previous.ids.length] : null;
+        for ( int i = 0; i < count; i++ )
+        {
+            Integer old = previous != null ? previous.ordinals.get( ids[i] ) : null;
+            if ( old != null && !taken[old] )
+            {
+                taken[old] = true;
+                itemIds[i] = previous.itemIds[old];
+            }
+            else
+                itemIds[i] = next++;
+        }
+        nextItemId = next;
+
+        if ( previous != null )
+            update( previous );
+    }
+
+    /**
+     * Returns the index of the title with the id.
+     *
+     * @param id The title id
+     * @return The index, or -1 if the catalog has no such title
+     */
+    int getOrdinal( String id )
+    {
+        Integer ordinal = ordinals.get( id );
+        return ordinal != null ? ordinal : -1;
+    }
+
+    /**
+     * Returns the item id of a title, which stays the same in the sorters of later catalogs.
+     *
+     * @param ordinal The index of the title
+     * @return The item id
+     */
+    long getItemId( int ordinal )
+    {
+        return itemIds[ordinal];
+    }
+
+    /**
+     * Computes the permutations of every order and the alphabetical sections.
+     *
+     * @return This sorter
+     */
+    TitleSorter prepare()
+    {
+        for ( TitlesAdapter.SortOrder order : TitlesAdapter.SortOrder.values() )
+            getPermutation( order );
+
+        if ( sections == null )
+            buildSections();
+
+        if ( rows == null )
+            buildRows();
+
+        return this;
+    }
+
+    /**
+     * Builds the row of every title.
+     */
+    private void buildRows()
+    {
+        String userLanguage = Locale.getDefault().getDisplayLanguage();
+
+        rows = new TitleRow[titles.size()];
+        titleRows = new IdentityHashMap<>( rows.length );
+        for ( int i = 0; i < rows.length; i++ )
+        {
+            rows[i] = new TitleRow( titles.get( i ), userLanguage );
+            titleRows.put( rows[i].title, rows[i] );
+        }
+    }
+
+    /**
+     * Returns the row of a title.
+     *
+     * @param ordinal The index of the title
+     * @return The row
+     */
+    TitleRow getRow( int ordinal )
+    {
+        if ( rows == null )
+            buildRows();
+
+        return rows[ordinal];
+    }
+
+    /**
+     * Returns the row of a title.
+     *
+     * @param title The title
+     * @return The row, or null if the title is not sorted by this sorter
+     */
+    TitleRow getRow( Title title )
+    {
+        if ( rows == null )
+            buildRows();
+
+        return titleRows.get( title );
+    }
+
+    /**
+     * Returns the sorted titles.
+     *
+     * @return The titles this sorter was created with
+     */
+    List<Title> getTitles()
+    {
+        return titles;
+    }
+
+    /**
+     * Returns the permutation of the titles for the sort order, sorting only on first use.
+     *
+     * @param order The sort order
+     * @return The title indexes in sorted order, which must not be modified
+     */
+    int[] getPermutation( TitlesAdapter.SortOrder order )
+    {
+        int[] permutation = permutations.get( order );
+        if ( permutation == null )
+        {
+            Integer[] indexes = new Integer[titles.size()];
+            for ( int i = 0; i < indexes.length; i++ )
+                indexes[i] = i;
+
+            Arrays.sort( indexes, comparator( order ) );
+
+            permutation = new int[indexes.length];
+            for ( int i = 0; i < indexes.length; i++ )
+                permutation[i] = indexes[i];
+
+            permutations.put( order, permutation );
+        }
+
+        return permutation;
+    }
+
+    /**
+     * Returns the sections of the alphabetical order.
+     *
+     * @return The section labels
+     */
+    String[] getSections()
+    {
+        if ( sections == null )
+            buildSections();
+
+        return sections;
+    }
+
+    /**
+     * Returns the first position of a section in alphabetical order.
+     *
+     * @param section The section index
+     * @return The position
+     */
+    int getPositionForSection( int section )
+    {
+        if ( sections == null )
+            buildSections();
+
+        if ( sectionPositions.length == 0 )
+            return 0;
+
+        return sectionPositions[Math.max( 0, Math.min( section, sectionPositions.length - 1 ) )];
+    }
+
+    /**
+     * Returns the section containing a position in alphabetical order.
+     *
+     * @param position The position
+     * @return The section index
+     */
+    int getSectionForPosition( int position )
+    {
+        if ( sections == null )
+            buildSections();
+
+        int index = Arrays.binarySearch( sectionPositions, position );
+
+        return Math.max( 0, index >= 0 ? index : -index - 2 );
+    }
+
+    /**
+     * Groups the alphabetical order into sections of titles starting with the same letter.
+     */
+    private void buildSections()
+    {
+        int[] permutation = getPermutation( TitlesAdapter.SortOrder.ALPHABETICAL );
+
+        List<String> labels = new ArrayList<>();
+        int[] positions = new int[permutation.length];
+
+        String label = null;
+        for ( int i = 0; i < permutation.length; i++ )
+        {
+            String section = sectionOf( sorting[permutation[i]] );
+            if ( !section.equals( label ) )
+            {
+                positions[labels.size()] = i;
+                labels.add( section );
+                label = section;
+            }
+        }
+
+        sections = labels.toArray( new String[labels.size()] );
+        sectionPositions = Arrays.copyOf( positions, sections.length );
+    }
+
+    /**
+     * Returns the section label for a title, its first letter without accents.
+     *
+     * @param title The sorting title
+     * @return The section label
+     */
+    private static String sectionOf( String title )
+    {
+        if ( title == null || title.isEmpty() )
+            return "#";
+
+        String first = title.substring( 0, title.offsetByCodePoints( 0, 1 ) );
+        String base = Normalizer.normalize( first, Normalizer.Form.NFD );
+
+        if ( !Character.isLetter( base.codePointAt( 0 ) ) )
+            return "#";
+
+        return base.substring( 0, base.offsetByCodePoints( 0, 1 ) ).toUpperCase( Locale.getDefault() );
+    }
+
+    /**
+     * Returns the comparator of title indexes for the sort order.
+     *
+     * @param order The sort order
+     * @return The comparator
+     */
+    private Comparator<Integer> comparator( TitlesAdapter.SortOrder order )
+    {
+        switch ( order )
+        {
+            case ALPHABETICAL:
+                return new Comparator<Integer>()
+                {
+                    @Override
+                    public int compare( Integer lhs, Integer rhs )
+                    {
+                        return keys[lhs].compareTo( keys[rhs] );
+                    }
+
+                };
+
+            case OLDEST:
+                return new Comparator<Integer>()
+                {
+                    @Override
+                    public int compare( Integer lhs, Integer rhs )
+                    {
+                        return compareLong( modified[lhs], modified[rhs] );
+                    }
+
+                };
+
+            default:
+                return new Comparator<Integer>()
+                {
+                    @Override
+                    public int compare( Integer lhs, Integer rhs )
+                    {
+                        return compareLong( modified[rhs], modified[lhs] );
+                    }
+
+                };
+        }
+    }
+
+    private static int compareLong( long lhs, long rhs )
+    {
+        return lhs < rhs ? -1 : (lhs == rhs ? 0 : 1);
+    }
+
+    /**
+     * Derives the permutations from those already computed for the previous catalog.
+     *
+     * @param previous The sorter for the previous catalog
+     */
+    private void update( TitleSorter previous )
+    {
+        // Map the unchanged titles of the previous catalog to their new index
+        int[] current = new int[previous.ids.length];
+        boolean[] unchanged = new boolean[ids.length];
+        for ( int i = 0; i < current.length; i++ )
+        {
+            Integer index = ordinals.get( previous.ids[i] );
+            if ( index != null && !unchanged[index] && previous.modified[i] == modified[index] && equals( previous.sorting[i], sorting[index] ) )
+            {
+                current[i] = index;
+                unchanged[index] = true;
+            }
+            else
+                current[i] = -1;
+        }
+
+        List<Integer> changed = new ArrayList<>();
+        for ( int i = 0; i < ids.length; i++ )
+            if ( !unchanged[i] )
+                changed.add( i );
+
+        for ( Map.Entry<TitlesAdapter.SortOrder, int[]> entry : previous.permutations.entrySet() )
+        {
+            Comparator<Integer> comparator = comparator( entry.getKey() );
+
+            Integer[] inserted = changed.toArray( new Integer[changed.size()] );
+            Arrays.sort( inserted, comparator );
+
+            // Merge the changed titles into the previous order
+            int[] permutation = new int[ids.length];
+            int count = 0;
+            int next = 0;
+            for ( int old : entry.getValue() )
+            {
+                int index = current[old];
+                if ( index < 0 )
+                    continue;
+
+                while ( next < inserted.length && comparator.compare( inserted[next], index ) < 0 )
+                    permutation[count++] = inserted[next++];
+
+                permutation[count++] = index;
+            }
+
+            while ( next < inserted.length )
+                permutation[count++] = inserted[next++];
+
+            permutations.put( entry.getKey(), permutation );
+        }
+    }
+
+    private static boolean equals( String one, String two )
+    {
+        return one == null ? two == null : one.equals( two );
+    }
+}
@@ -4,30 +4,30 @@ import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.BaseAdapter;
 import android.widget.ImageView;
+import android.widget.SectionIndexer;
 import android.widget.TextView;
 
-import com.android.volley.toolbox.NetworkImageView;
-import com.hudren.homevideo.model.FormatUtils;
-import com.hudren.homevideo.model.Info;
-import com.hudren.homevideo.model.Season;
+import com.hudren.homevideo.image.PosterView;
+import com.hudren.homevideo.model.FacetIndex;
 import com.hudren.homevideo.model.Title;
-import com.hudren.homevideo.model.Video;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Locale;
 
-import static com.hudren.homevideo.VideoApp.serverUrl;
-
 /**
- * Adapter used for displaying the titles in a list.
+ * Adapter used for displaying the titles in a list. The alphabetical order is divided into sections
+ * by first letter for fast scrolling. Posters still loading when their row scrolls out of sight
+ * are cancelled, so flinging through the list does not queue requests ahead of the visible rows.
  */
-public class TitlesAdapter extends BaseAdapter
+public class TitlesAdapter extends BaseAdapter implements SectionIndexer, AbsListView.RecyclerListener
 {
+    private static final String[] NO_SECTIONS = new String[0];
+
     private final LayoutInflater inflater;
 
     private String userLanguage;
@@ -36,6 +36,11 @@ public class TitlesAdapter extends BaseAdapter
     private boolean showIndicators;
     private boolean showCastIndicators;
 
+    /**
+     * Changes whenever the display settings change, so rows showing the same title are rebound.
+     */
+    private int version;
+
     enum SortOrder
     {
         ALPHABETICAL, MOST_RECENT, OLDEST
@@ -44,6 +49,18 @@ public class TitlesAdapter extends BaseAdapter
     private SortOrder order = SortOrder.MOST_RECENT;
 
     private List<Title> titles = new ArrayList<>();
+    private TitleSorter sorter;
+    private int[] permutation = new int[0];
+    private List<Title> results;
+
+    private FacetIndex facets;
+    private BitSet matches;
+
+    /**
+     * The displayed titles, either the filtered search results or the filtered permutation.
+     */
+    private List<Title> displayed;
+    private int[] rows = new int[0];
 
     public TitlesAdapter( Context context )
     {
@@ -63,6 +80,7 @@ public class TitlesAdapter extends BaseAdapter
         if ( streamHighQuality != this.streamHighQuality )
         {
             this.streamHighQuality = streamHighQuality;
+            version++;
 
             notifyDataSetChanged();
         }
@@ -78,6 +96,7 @@ public class TitlesAdapter extends BaseAdapter
         if ( show != showIndicators )
         {
             showIndicators = show;
+            version++;
 
             notifyDataSetChanged();
         }
@@ -93,93 +112,200 @@ public class TitlesAdapter extends BaseAdapter
         if ( show != showCastIndicators )
         {
             showCastIndicators = show;
+            version++;
 
             notifyDataSetChanged();
         }
     }
 
+    /**
+     * Returns the sorter of the displayed titles, used to prepare the sorter of the next catalog.
+     *
+     * @return The sorter, or null if no titles have been set
+     */
+    public TitleSorter getSorter()
+    {
+        return sorter;
+    }
+
     /**
      * Sets the titles to be displayed in the list.
      *
-     * @param titles The list of views
+     * @param sorter The sorter of the titles, prepared for every order
      */
-    public void setTitles( List<Title> titles )
+    public void setTitles( TitleSorter sorter )
     {
-        this.titles = titles;
+        this.sorter = sorter;
+        titles = sorter.getTitles();
+        permutation = sorter.getPermutation( order );
 
-        sortTitles();
+        updateRows();
+    }
 
-        notifyDataSetChanged();
+    /**
+     * Sets the search results to be displayed instead of the sorted titles.
+     *
+     * @param results The matching titles in display order, or null to display all titles
+     */
+    public void setSearchResults( List<Title> results )
+    {
+        this.results = results;
+
+        updateRows();
     }
 
-    public void setSortOrder( SortOrder order )
+    /**
+     * Sets the facet filter applied to the displayed titles.
+     *
+     * @param facets  The facet index of the titles
+     * @param matches The ordinals of the titles to display, or null to display all titles
+     */
+    public void setFilter( FacetIndex facets, BitSet matches )
     {
-        if ( order != this.order )
-        {
-            this.order = order;
+        this.facets = facets;
+        this.matches = matches;
 
-            sortTitles();
+        updateRows();
+    }
 
-            notifyDataSetChanged();
-        }
+    /**
+     * Returns whether a filter is applied, in which case not all titles are displayed.
+     *
+     * @return True, if filtered by search or facets
+     */
+    private boolean isFiltered()
+    {
+        return results != null || matches != null;
     }
 
-    private void sortTitles()
+    /**
+     * Determines the displayed titles after the titles, order, search or filter changed.
+     */
+    private void updateRows()
     {
-        if ( order == SortOrder.ALPHABETICAL )
-        {
-            Collections.sort( titles, new Comparator<Title>()
-            {
-                @Override
-                public int compare( Title lhs, Title rhs )
-                {
-                    return lhs.getSortingTitle().compareTo( rhs.getSortingTitle() );
-                }
+        // Filter only applies to the titles it was built for
+        BitSet filter = facets != null && facets.getTitles() == titles ? matches : null;
 
-            } );
+        if ( results != null )
+        {
+            displayed = filter != null ? facets.filter( results, filter ) : results;
         }
-        else if ( order == SortOrder.MOST_RECENT )
+        else
         {
-            Collections.sort( titles, Collections.reverseOrder( new Comparator<Title>()
+            displayed = null;
+
+            if ( filter != null )
             {
-                @Override
-                public int compare( Title lhs, Title rhs )
-                {
-                    return Long.valueOf( lhs.getModified() ).compareTo( rhs.getModified() );
-                }
+                rows = new int[filter.cardinality()];
 
-            } ) );
+                int count = 0;
+                for ( int ordinal : permutation )
+                    if ( filter.get( ordinal ) )
+                        rows[count++] = ordinal;
+            }
+            else
+                rows = permutation;
         }
-        else if ( order == SortOrder.OLDEST )
+
+        notifyDataSetChanged();
+    }
+
+    public void setSortOrder( SortOrder order )
+    {
+        if ( order != this.order )
         {
-            Collections.sort( titles, new Comparator<Title>()
-            {
-                @Override
-                public int compare( Title lhs, Title rhs )
-                {
-                    return Long.valueOf( lhs.getModified() ).compareTo( rhs.getModified() );
-                }
+            this.order = order;
+
+            if ( sorter != null )
+                permutation = sorter.getPermutation( order );
 
-            } );
+            updateRows();
         }
     }
 
+    @Override
+    public Object[] getSections()
+    {
+        if ( order != SortOrder.ALPHABETICAL || sorter == null || isFiltered() )
+            return NO_SECTIONS;
+
+        return sorter.getSections();
+    }
+
+    @Override
+    public int getPositionForSection( int sectionIndex )
+    {
+        if ( order != SortOrder.ALPHABETICAL || sorter == null || isFiltered() )
+            return 0;
+
+        return sorter.getPositionForSection( sectionIndex );
+    }
+
+    @Override
+    public int getSectionForPosition( int position )
+    {
+        if ( order != SortOrder.ALPHABETICAL || sorter == null || isFiltered() )
+            return 0;
+
+        return sorter.getSectionForPosition( position );
+    }
+
     @Override
     public int getCount()
     {
-        return titles.size();
+        return displayed != null ? displayed.size() : rows.length;
     }
 
     @Override
     public Object getItem( int position )
     {
-        return titles.get( position );
+        return displayed != null ? displayed.get( position ) : titles.get( rows[position] );
     }
 
+    /**
+     * Returns the item id assigned by the sorter, so rows keep their identity across catalogs.
+     */
     @Override
     public long getItemId( int position )
     {
-        return position;
+        if ( displayed == null )
+            return sorter.getItemId( rows[position] );
+
+        // Results may be from another catalog
+        int ordinal = sorter != null ? sorter.getOrdinal( displayed.get( position ).id ) : -1;
+        return ordinal >= 0 ? sorter.getItemId( ordinal ) : -1 - position;
+    }
+
+    @Override
+    public boolean hasStableIds()
+    {
+        return true;
+    }
+
+    /**
+     * Returns the position of the title with the id.
+     *
+     * @param id The title id
+     * @return The position, or -1 if the title is not displayed
+     */
+    public int getPositionForTitle( String id )
+    {
+        if ( displayed != null )
+        {
+            for ( int i = 0; i < displayed.size(); i++ )
+                if ( id.equals( displayed.get( i ).id ) )
+                    return i;
+
+            return -1;
+        }
+
+        int ordinal = sorter != null ? sorter.getOrdinal( id ) : -1;
+        if ( ordinal >= 0 )
+            for ( int i = 0; i < rows.length; i++ )
+                if ( rows[i] == ordinal )
+                    return i;
+
+        return -1;
     }
 
     @Override
@@ -187,113 +313,135 @@ public class TitlesAdapter extends BaseAdapter
     {
         View view = convertView;
         if ( view == null )
+        {
             view = inflater.inflate( R.layout.video_list_item, parent, false );
+            view.setTag( new ViewHolder( view ) );
+        }
 
-        bindView( position, view );
+        bindView( position, (ViewHolder) view.getTag() );
 
         return view;
     }
 
+    @Override
+    public void onMovedToScrapHeap( View view )
+    {
+        ViewHolder holder = (ViewHolder) view.getTag();
+
+        // Request the poster again if the row is reused for the same title
+        if ( holder != null && holder.poster != null && holder.poster.cancel() )
+            holder.row = null;
+    }
+
     /**
-     * Populates the view with the item information.
+     * Returns the prepared row of the item.
      *
      * @param position The item position
-     * @param view     The view associated with the position
+     * @return The row
      */
-    private void bindView( int position, View view )
+    private TitleRow getRow( int position )
     {
-        Title title = (Title) getItem( position );
-        Video video = title.getVideo();
-        Info info = title.info;
+        if ( displayed == null )
+            return sorter.getRow( rows[position] );
 
-        // Main text
-        TextView text1 = (TextView) view.findViewById( android.R.id.text1 );
-        text1.setText( title.getTitle() );
+        // Results may be from another catalog
+        Title title = displayed.get( position );
+        TitleRow row = sorter.getRow( title );
 
-        // Subtext
-        TextView text2 = (TextView) view.findViewById( android.R.id.text2 );
-
-        String details = "";
-        if ( video != null )
-        {
-            if ( info.year > 0 )
-                details += info.year;
-
-            String language = video.getLanguage();
-            if ( language != null && language.length() > 0 && !language.equals( userLanguage ) )
-                details += "    " + language;
+        return row != null ? row : new TitleRow( title, userLanguage );
+    }
 
-            if ( info.rated != null && info.rated.length() > 0 )
-                details += "    " + info.rated;
+    /**
+     * Returns the poster url of the item.
+     *
+     * @param position The item position
+     * @return The url, or null if the title has no poster
+     */
+    String getPoster( int position )
+    {
+        return getRow( position ).getPoster();
+    }
 
-            if ( info.runtime != null && info.runtime.length() > 0 )
-                details += "    " + info.runtime;
-        }
-        else
-        {
-            if ( !title.hasSeasons() && info.year > 0 )
-                details += info.year;
+    /**
+     * Populates the view with the item information.
+     *
+     * @param position The item position
+     * @param holder   The views of the item
+     */
+    private void bindView( int position, ViewHolder holder )
+    {
+        TitleRow row = getRow( position );
+        String poster = row.getPoster();
 
-            List<Season> seasons = title.getSeasons();
-            int count = seasons.size();
-            if ( count > 0 )
-            {
-                ArrayList<Integer> numbers = new ArrayList<>();
-                for ( Season season : seasons )
-                    numbers.add( season.index );
-
-                if ( count == 1 )
-                    details = "Season " + FormatUtils.ranges( numbers );
-                else
-                    details = "Seasons " + FormatUtils.ranges( numbers );
-            }
+        // Row already shows this title, the poster url only changes with the server
+        if ( holder.row == row && holder.version == version && holder.posterUrl == poster )
+            return;
 
-            if ( info.rated != null )
-                details += "    " + info.rated;
-        }
+        holder.row = row;
+        holder.version = version;
+        holder.posterUrl = poster;
 
-        text2.setText( details.trim() );
+        holder.text1.setText( row.text );
+        holder.text2.setText( row.details );
 
         // Change visibility of icons
         if ( showIndicators )
         {
-            TextView downloaded = (TextView) view.findViewById( R.id.downloaded );
-            if ( downloaded != null )
-                downloaded.setVisibility( View.INVISIBLE );
-
-            ImageView icon = (ImageView) view.findViewById( R.id.stream );
-            if ( icon != null )
-                icon.setVisibility( video != null && video.shouldStream( streamHighQuality ) ? View.VISIBLE : View.INVISIBLE );
-
-            icon = (ImageView) view.findViewById( R.id.download );
-            if ( icon != null )
-                icon.setVisibility( video != null && video.canDownload() ? View.VISIBLE : View.INVISIBLE );
-
-            icon = (ImageView) view.findViewById( R.id.cast );
-            if ( icon != null )
-                icon.setVisibility( showCastIndicators && video != null && video.canCast() ? View.VISIBLE : View.INVISIBLE );
+            setVisible( holder.downloaded, false );
+            setVisible( holder.stream, row.single && (streamHighQuality || row.streamable) );
+            setVisible( holder.download, row.downloadable );
+            setVisible( holder.cast, showCastIndicators && row.castable );
         }
         else
         {
-            TextView downloaded = (TextView) view.findViewById( R.id.downloaded );
-            if ( downloaded != null )
-                downloaded.setVisibility( video != null && video.isDownloaded() ? View.VISIBLE : View.INVISIBLE );
+            setVisible( holder.downloaded, row.downloaded );
+            setVisible( holder.stream, false );
+            setVisible( holder.download, false );
+            setVisible( holder.cast, false );
+        }
 
-            ImageView icon = (ImageView) view.findViewById( R.id.stream );
-            if ( icon != null )
-                icon.setVisibility( View.INVISIBLE );
+        if ( holder.poster != null )
+            holder.poster.setImageUrl( poster, row.getThumb(), VideoApp.getImageLoader() );
+    }
 
-            icon = (ImageView) view.findViewById( R.id.download );
-            if ( icon != null )
-                icon.setVisibility( View.INVISIBLE );
+    /**
+     * Shows or hides an optional view, keeping its space in the layout.
+     *
+     * @param view    The view, or null if not in the layout
+     * @param visible True, to show the view
+     */
+    private static void setVisible( View view, boolean visible )
+    {
+        if ( view != null )
+            view.setVisibility( visible ? View.VISIBLE : View.INVISIBLE );
+    }
 
-            icon = (ImageView) view.findViewById( R.id.cast );
-            if ( icon != null )
-                icon.setVisibility( View.INVISIBLE );
+    /**
+     * Holds the views of a list item and the title they display.
+     */
+    private static class ViewHolder
+    {
+        final TextView text1;
+        final TextView text2;
+        final TextView downloaded;
+        final ImageView stream;
+        final ImageView download;
+        final ImageView cast;
+        final PosterView poster;
+
+        TitleRow row;
+        int version;
+        String posterUrl;
+
+        ViewHolder( View view )
+        {
+            text1 = (TextView) view.findViewById( android.R.id.text1 );
+            text2 = (TextView) view.findViewById( android.R.id.text2 );
+            downloaded = (TextView) view.findViewById( R.id.downloaded );
+            stream = (ImageView) view.findViewById( R.id.stream );
+            download = (ImageView) view.findViewById( R.id.download );
+            cast = (ImageView) view.findViewById( R.id.cast );
+            poster = (PosterView) view.findViewById( R.id.poster );
         }
-
-        NetworkImageView image = (NetworkImageView) view.findViewById( R.id.poster );
-        if ( image != null )
-            image.setImageUrl( serverUrl( title.poster ), VideoApp.getImageLoader() );
     }
 }
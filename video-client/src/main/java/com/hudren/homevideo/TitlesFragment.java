@@ -19,13 +19,18 @@ import android.widget.AbsListView;
 import android.widget.ListView;
 
 import com.hudren.homevideo.model.Container;
+import com.hudren.homevideo.model.FacetIndex;
 import com.hudren.homevideo.model.FormatUtils;
 import com.hudren.homevideo.model.Title;
 import com.hudren.homevideo.model.Video;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Implements a ListView to display and interact with videos.
@@ -35,6 +40,9 @@ public class TitlesFragment extends ListFragment implements IVideoFragment
     private TitlesAdapter adapter;
     private boolean multipane;
 
+    private FacetIndex facets;
+    private final Map<FacetIndex.Facet, Set<String>> selection = FacetIndex.emptySelection();
+
     @Override
     public View onCreateView( LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState )
     {
@@ -54,6 +62,10 @@ public class TitlesFragment extends ListFragment implements IVideoFragment
         super.onActivityCreated( savedInstanceState );
 
         ListView view = getListView();
+        view.setFastScrollEnabled( true );
+        view.setRecyclerListener( adapter );
+        view.setOnScrollListener( new PosterPrefetcher( getActivity(), adapter ) );
+
         if ( multipane )
             view.setChoiceMode( ListView.CHOICE_MODE_NONE );
 
@@ -75,13 +87,133 @@ public class TitlesFragment extends ListFragment implements IVideoFragment
     }
 
     /**
-     * Displays the videos.
+     * Displays the videos, keeping the first visible title in place.
      *
-     * @param titles The titles to be displayed
+     * @param sorter The sorter of the titles to be displayed
      */
-    public void setTitles( List<Title> titles )
+    public void setTitles( TitleSorter sorter )
     {
-        adapter.setTitles( titles );
+        ListView list = getView() != null ? getListView() : null;
+
+        String id = null;
+        int top = 0;
+        if ( list != null && list.getChildCount() > 0 && list.getFirstVisiblePosition() < adapter.getCount() )
+        {
+            id = ((Title) adapter.getItem( list.getFirstVisiblePosition() )).id;
+            top = list.getChildAt( 0 ).getTop();
+        }
+
+        adapter.setTitles( sorter );
+
+        if ( id != null )
+        {
+            int position = adapter.getPositionForTitle( id );
+            if ( position >= 0 && position != list.getFirstVisiblePosition() )
+                list.setSelectionFromTop( position, top );
+        }
+    }
+
+    /**
+     * Returns the sorter of the displayed titles.
+     *
+     * @return The sorter, or null if no titles are displayed
+     */
+    public TitleSorter getSorter()
+    {
+        return adapter.getSorter();
+    }
+
+    /**
+     * Displays only the titles matching a search.
+     *
+     * @param results The matching titles in display order, or null to display all titles
+     */
+    public void setSearchResults( List<Title> results )
+    {
+        adapter.setSearchResults( results );
+    }
+
+    /**
+     * Sets the facet index of the displayed titles, applying the current filter.
+     *
+     * @param facets The facet index
+     */
+    public void setFacets( FacetIndex facets )
+    {
+        this.facets = facets;
+
+        applyFilter();
+    }
+
+    public FacetIndex getFacets()
+    {
+        return facets;
+    }
+
+    /**
+     * Returns the selected facet values.
+     *
+     * @return The selection, which must not be modified
+     */
+    public Map<FacetIndex.Facet, Set<String>> getSelection()
+    {
+        return selection;
+    }
+
+    /**
+     * Selects or deselects a facet value and filters the titles.
+     *
+     * @param facet    The facet
+     * @param value    The value
+     * @param selected True, to display the titles having the value
+     */
+    public void setFilter( FacetIndex.Facet facet, String value, boolean selected )
+    {
+        Set<String> values = selection.get( facet );
+        if ( values == null )
+        {
+            values = new HashSet<>();
+            selection.put( facet, values );
+        }
+
+        if ( selected )
+            values.add( value );
+        else
+            values.remove( value );
+
+        applyFilter();
+    }
+
+    /**
+     * Removes all facet filters.
+     */
+    public void clearFilters()
+    {
+        selection.clear();
+
+        applyFilter();
+    }
+
+    /**
+     * Shows the dialog for filtering the titles.
+     */
+    public void showFilters()
+    {
+        if ( facets != null )
+        {
+            FilterDialog dialog = new FilterDialog();
+            dialog.setTargetFragment( this, 0 );
+            dialog.show( getFragmentManager(), "filters" );
+        }
+    }
+
+    private void applyFilter()
+    {
+        BitSet matches = null;
+        if ( facets != null && FacetIndex.isFiltered( selection ) )
+            matches = facets.filter( selection );
+
+        adapter.setFilter( facets, matches );
     }
 
     public boolean hasTitles()
@@ -113,13 +245,15 @@ public class TitlesFragment extends ListFragment implements IVideoFragment
     }
 
     /**
-     * Sets whether this devices is connected to a server.
+     * Sets whether this devices is connected to a server. The visible rows are bound again, as the
+     * server url of the posters may have changed.
      *
      * @param connected True, if connected
      */
     public void setConnected( boolean connected )
     {
         adapter.setShowIndicators( connected );
+        adapter.notifyDataSetChanged();
     }
 
     /**
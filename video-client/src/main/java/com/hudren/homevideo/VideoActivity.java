@@ -293,7 +293,7 @@ public abstract class VideoActivity extends AppCompatActivity implements IPlayba
      * @param container The container to check
      * @return The file for this container, or null
      */
-    public File downloadedFile( Container container )
+    public static File downloadedFile( Container container )
     {
         String url = serverUrl( container.filename );
         File file = url != null ? new File( downloadDir, url ) : null;
@@ -307,7 +307,7 @@ public abstract class VideoActivity extends AppCompatActivity implements IPlayba
      * @param video The video to check for downloads
      * @return A downloaded container, or null
      */
-    public Container downloadedContainer( Video video )
+    public static Container downloadedContainer( Video video )
     {
         for ( Container container : video.getContainers() )
             if ( downloadedFile( container ) != null )
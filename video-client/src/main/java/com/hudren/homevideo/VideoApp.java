@@ -2,10 +2,13 @@ package com.hudren.homevideo;
 
 import android.app.Application;
 import android.content.Context;
+import android.os.AsyncTask;
 
-import com.android.volley.toolbox.ImageLoader;
 import com.google.android.libraries.cast.companionlibrary.cast.CastConfiguration;
 import com.google.android.libraries.cast.companionlibrary.cast.VideoCastManager;
+import com.hudren.homevideo.image.PosterLoader;
+import com.hudren.homevideo.model.ModelAdapters;
+import com.hudren.homevideo.server.HttpTransport;
 import com.hudren.homevideo.server.VideoServer;
 
 /**
@@ -20,14 +23,35 @@ public class VideoApp extends Application
     private static boolean connected;
     private static VideoServer server;
 
-    private static ImageLoader imageLoader;
+    private static PosterLoader imageLoader;
 
     @Override
     public void onCreate()
     {
         super.onCreate();
 
+        // Before any connection is opened
+        HttpTransport.configure();
+
         imageLoader = NetworkManager.getInstance( this ).getImageLoader();
+
+        // Load the json adapters before the catalog is first parsed
+        AsyncTask.execute( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ModelAdapters.warmUp();
+            }
+        } );
+    }
+
+    @Override
+    public void onTrimMemory( int level )
+    {
+        super.onTrimMemory( level );
+
+        NetworkManager.getInstance( this ).getBitmapCache().trimMemory( level );
     }
 
     /**
@@ -77,9 +101,30 @@ public class VideoApp extends Application
         VideoApp.server = server;
     }
 
+    /**
+     * Returns the url of the current server.
+     *
+     * @return The url, or null if no server is known
+     */
+    public static String getServerUrl()
+    {
+        return server != null ? server.getServerUrl() : null;
+    }
+
     public static String serverUrl( String url )
     {
-        String base = server.getServerUrl();
+        return serverUrl( getServerUrl(), url );
+    }
+
+    /**
+     * Resolves a url given by the server against the server url.
+     *
+     * @param base The server url, or null if unknown
+     * @param url  The url, either absolute or relative to the server
+     * @return The absolute url, or the url as is if the server is unknown
+     */
+    public static String serverUrl( String base, String url )
+    {
         if ( base == null )
             return url;
 
@@ -98,7 +143,7 @@ public class VideoApp extends Application
         return null;
     }
 
-    public static ImageLoader getImageLoader()
+    public static PosterLoader getImageLoader()
     {
         return imageLoader;
     }
@@ -0,0 +1,355 @@
+package com.hudren.homevideo.image;
+
+import android.annotation.TargetApi;
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.android.volley.toolbox.ImageLoader;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memory cache for the decoded posters, bounded by the number of bytes used by the bitmaps rather
+ * than the number of entries. The size is a fraction of the memory available to the application,
+ * and the cache is trimmed when the system is low on memory.
+ * <p>
+ * Thumbnails requested for small views and larger images are kept in separate partitions, so
+ * scrolling through the list never evicts the detail poster and vice versa. Evicted bitmaps are
+ * handed to a pool so their memory can be reused.
+ * <p>
+ * Prefetched posters are kept in a separate partition carved out of the same budget, so prefetching
+ * never evicts displayed posters. A prefetched poster moves to its regular partition when requested.
+ */
+public class BitmapCache implements ImageLoader.ImageCache
+{
+    private static final String TAG = "BitmapCache";
+
+    /**
+     * The fraction of the memory class used for caching bitmaps.
+     */
+    private static final int MEMORY_FRACTION = 8;
+
+    /**
+     * The fraction of the cache used for thumbnails.
+     */
+    private static final int SMALL_FRACTION = 4;
+
+    /**
+     * Images requested with a maximum size of up to this many pixels are thumbnails.
+     */
+    private static final int SMALL_MAX_PIXELS = 256 * 256;
+
+    /**
+     * The size of the prefetch partition as a fraction of the cache size.
+     */
+    private static final int PREFETCH_FRACTION = 8;
+
+    private final BitmapPool pool;
+    private final Partition small;
+    private final Partition large;
+    private final Partition prefetched;
+    private int prefetchHits;
+
+    public BitmapCache( Context context, BitmapPool pool )
+    {
+        this( getDefaultSize( context ), pool );
+    }
+
+    public BitmapCache( int maxBytes, BitmapPool pool )
+    {
+        this.pool = pool;
+
+        int[] sizes = partitionSizes( maxBytes );
+        small = new Partition( sizes[0] );
+        large = new Partition( sizes[1] );
+        prefetched = new Partition( sizes[2] );
+    }
+
+    /**
+     * Divides the cache size between the partitions, the large images getting what is left after
+     * the thumbnails and prefetched posters.
+     *
+     * @param maxBytes The cache size
+     * @return The sizes of the small, large and prefetch partitions, adding up to the cache size
+     */
+    static int[] partitionSizes( int maxBytes )
+    {
+        int small = maxBytes / SMALL_FRACTION;
+        int prefetch = maxBytes / PREFETCH_FRACTION;
+
+        return new int[]{small, maxBytes - small - prefetch, prefetch};
+    }
+
+    /**
+     * Returns the memory used by a bitmap, which may be larger than needed for a reused bitmap.
+     *
+     * @param bitmap The bitmap
+     * @return The size in bytes
+     */
+    @TargetApi( Build.VERSION_CODES.KITKAT )
+    private static int byteCountOf( Bitmap bitmap )
+    {
+        if ( Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT )
+            return bitmap.getAllocationByteCount();
+
+        return bitmap.getByteCount();
+    }
+
+    /**
+     * Returns the partition for an image, based on the maximum size in the cache key generated by
+     * the image loader ("#W{width}#H{height}#S{scale}{url}").
+     *
+     * @param key The cache key
+     * @return The partition
+     */
+    private Partition partitionOf( String key )
+    {
+        if ( key.startsWith( "#W" ) )
+        {
+            int h = key.indexOf( "#H", 2 );
+            int s = h > 0 ? key.indexOf( "#S", h + 2 ) : -1;
+
+            if ( s > 0 )
+            {
+                try
+                {
+                    long width = Integer.parseInt( key.substring( 2, h ) );
+                    long height = Integer.parseInt( key.substring( h + 2, s ) );
+
+                    if ( width > 0 && height > 0 && width * height <= SMALL_MAX_PIXELS )
+                        return small;
+                }
+                catch ( NumberFormatException e )
+                {
+                    // Not a sized image
+                }
+            }
+        }
+
+        return large;
+    }
+
+    /**
+     * Returns the default cache size for the device.
+     *
+     * @param context The context
+     * @return The size in bytes
+     */
+    public static int getDefaultSize( Context context )
+    {
+        ActivityManager manager = (ActivityManager) context.getSystemService( Context.ACTIVITY_SERVICE );
+
+        return manager.getMemoryClass() * 1024 * 1024 / MEMORY_FRACTION;
+    }
+
+    @Override
+    public Bitmap getBitmap( String url )
+    {
+        Partition partition = partitionOf( url );
+
+        Bitmap bitmap = partition.get( url );
+        if ( bitmap == null )
+        {
+            bitmap = prefetched.remove( url );
+            if ( bitmap != null )
+            {
+                partition.add( url, bitmap );
+
+                synchronized ( this )
+                {
+                    prefetchHits++;
+                }
+            }
+        }
+
+        return bitmap;
+    }
+
+    @Override
+    public void putBitmap( String url, Bitmap bitmap )
+    {
+        partitionOf( url ).add( url, bitmap );
+    }
+
+    /**
+     * Returns whether an image is cached, without affecting the order of eviction.
+     *
+     * @param url The cache key
+     * @return True, if the image is cached or prefetched
+     */
+    public boolean contains( String url )
+    {
+        return partitionOf( url ).contains( url ) || prefetched.contains( url );
+    }
+
+    /**
+     * Caches a prefetched image that has not been displayed yet.
+     *
+     * @param url    The cache key
+     * @param bitmap The image
+     */
+    public void putPrefetched( String url, Bitmap bitmap )
+    {
+        prefetched.add( url, bitmap );
+    }
+
+    /**
+     * Releases memory as requested by the system.
+     *
+     * @param level The trim level passed to onTrimMemory
+     */
+    public void trimMemory( int level )
+    {
+        trimMemory( small, level );
+        trimMemory( large, level );
+        trimMemory( prefetched, level );
+
+        // Evicted bitmaps are not kept either
+        if ( pool != null && level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW )
+            pool.clear();
+
+        Log.d( TAG, "trimmed to " + getSize() + " bytes (level " + level + "), " + this );
+    }
+
+    private void trimMemory( Partition cache, int level )
+    {
+        if ( level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE )
+            cache.evictAll();
+
+        else if ( level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL )
+            trimToSize( cache, cache.maxSize() / 4 );
+
+        else if ( level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW )
+            trimToSize( cache, cache.maxSize() / 2 );
+    }
+
+    /**
+     * Removes the least recently used images until the partition fits the size. LruCache.trimToSize
+     * is only public from Jelly Bean MR1.
+     *
+     * @param cache   The partition
+     * @param maxSize The size to trim to
+     */
+    private void trimToSize( Partition cache, int maxSize )
+    {
+        // The snapshot is ordered from least to most recently used
+        for ( String key : cache.snapshot().keySet() )
+        {
+            if ( cache.size() <= maxSize )
+                break;
+
+            // Not pooled by entryRemoved, as removed rather than evicted
+            Bitmap bitmap = cache.remove( key );
+            if ( pool != null && bitmap != null )
+                pool.put( bitmap );
+        }
+    }
+
+    public int getHitCount()
+    {
+        return small.hitCount() + large.hitCount() + getPrefetchHitCount();
+    }
+
+    /**
+     * Returns the number of requested images that had been prefetched.
+     *
+     * @return The number of hits
+     */
+    public synchronized int getPrefetchHitCount()
+    {
+        return prefetchHits;
+    }
+
+    public int getMissCount()
+    {
+        // Prefetched images were missing from their partition
+        return small.missCount() + large.missCount() - getPrefetchHitCount();
+    }
+
+    public int getEvictionCount()
+    {
+        return small.evictionCount() + large.evictionCount();
+    }
+
+    /**
+     * Returns the number of bytes used by the cached bitmaps.
+     *
+     * @return The size in bytes
+     */
+    public int getSize()
+    {
+        return small.size() + large.size() + prefetched.size();
+    }
+
+    public int getMaxSize()
+    {
+        return small.maxSize() + large.maxSize() + prefetched.maxSize();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BitmapCache[size=" + getSize() + "/" + getMaxSize() + ", hits=" + getHitCount()
+                + ", prefetched=" + getPrefetchHitCount() + ", misses=" + getMissCount() + ", evictions="
+                + getEvictionCount() + "]";
+    }
+
+    /**
+     * A partition of the cache, which also tracks its keys so the cached images can be checked
+     * without copying the cache or affecting the order of eviction.
+     */
+    private class Partition extends LruCache<String, Bitmap>
+    {
+        private final Set<String> keys = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+
+        Partition( int maxBytes )
+        {
+            super( maxBytes );
+        }
+
+        /**
+         * Caches an image.
+         *
+         * @param key    The cache key
+         * @param bitmap The image
+         */
+        void add( String key, Bitmap bitmap )
+        {
+            // Added first, as an image larger than the partition is removed before put returns
+            keys.add( key );
+            put( key, bitmap );
+        }
+
+        boolean contains( String key )
+        {
+            return keys.contains( key );
+        }
+
+        @Override
+        protected int sizeOf( String key, Bitmap bitmap )
+        {
+            return byteCountOf( bitmap );
+        }
+
+        @Override
+        protected void entryRemoved( boolean evicted, String key, Bitmap oldValue, Bitmap newValue )
+        {
+            if ( newValue == null )
+                keys.remove( key );
+
+            // Removed to be moved to another partition
+            if ( !evicted && newValue == null )
+                return;
+
+            if ( pool != null && oldValue != newValue )
+                pool.put( oldValue );
+        }
+    }
+}
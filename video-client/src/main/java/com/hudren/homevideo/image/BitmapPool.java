@@ -0,0 +1,101 @@
+package com.hudren.homevideo.image;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.util.Log;
+
+/**
+ * Keeps bitmaps evicted from the memory cache so their memory can be reused for decoding other
+ * posters, reducing garbage collection while scrolling. Bitmaps are bucketed by their allocated
+ * size, and a decode reuses the smallest bitmap large enough for the decoded image.
+ * <p>
+ * A bitmap evicted while it is still displayed is only pooled once no view displays it any more,
+ * so views must report the bitmaps they display. Reusing bitmaps of different sizes requires
+ * KitKat, the pool stays empty on earlier versions.
+ */
+public class BitmapPool extends ReusePool<Bitmap>
+{
+    private static final String TAG = "BitmapPool";
+
+    /**
+     * Creates a pool.
+     *
+     * @param maxBytes The maximum total size of the pooled bitmaps
+     */
+    public BitmapPool( int maxBytes )
+    {
+        super( maxBytes );
+    }
+
+    /**
+     * Returns whether bitmaps can be reused on this device.
+     *
+     * @return True, if bitmaps of different sizes can be reused
+     */
+    public static boolean isSupported()
+    {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+    }
+
+    /**
+     * Adds a bitmap that is no longer cached to the pool.
+     *
+     * @param bitmap The bitmap
+     */
+    public void put( Bitmap bitmap )
+    {
+        if ( isSupported() )
+            release( bitmap );
+    }
+
+    /**
+     * Removes a bitmap from the pool that can hold an image of the size.
+     *
+     * @param width  The image width
+     * @param height The image height
+     * @param config The bitmap configuration
+     * @return The bitmap, or null if there is no bitmap that can be reused
+     */
+    public Bitmap get( int width, int height, Bitmap.Config config )
+    {
+        if ( !isSupported() )
+            return null;
+
+        return acquire( width * height * bytesPerPixel( config ) );
+    }
+
+    @Override
+    @TargetApi( Build.VERSION_CODES.KITKAT )
+    int sizeOf( Bitmap bitmap )
+    {
+        return bitmap.getAllocationByteCount();
+    }
+
+    @Override
+    boolean isReusable( Bitmap bitmap )
+    {
+        return bitmap.isMutable() && !bitmap.isRecycled();
+    }
+
+    /**
+     * Releases all pooled bitmaps.
+     */
+    @Override
+    public void clear()
+    {
+        super.clear();
+
+        Log.d( TAG, toString() );
+    }
+
+    private static int bytesPerPixel( Bitmap.Config config )
+    {
+        if ( config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444 )
+            return 2;
+        if ( config == Bitmap.Config.ALPHA_8 )
+            return 1;
+
+        return 4;
+    }
+}
@@ -0,0 +1,46 @@
+package com.hudren.homevideo.image;
+
+import com.android.volley.toolbox.DiskBasedCache;
+
+import java.io.File;
+
+/**
+ * Disk cache for the downloaded posters and thumbnails, keyed by the poster url and bounded by
+ * the total size of the files. The least recently used posters are removed first.
+ * <p>
+ * The cache may be initialized by the first thread needing it, either the cache dispatcher or the
+ * thread preparing the posters for the first screen.
+ */
+public class PosterCache extends DiskBasedCache
+{
+    private boolean initialized;
+
+    /**
+     * Creates the cache.
+     *
+     * @param root     The directory of the cache
+     * @param maxBytes The maximum total size of the cached posters
+     */
+    public PosterCache( File root, int maxBytes )
+    {
+        super( root, maxBytes );
+    }
+
+    @Override
+    public synchronized void initialize()
+    {
+        // Reading the headers of every file is only needed once
+        if ( !initialized )
+        {
+            super.initialize();
+            initialized = true;
+        }
+    }
+
+    @Override
+    public synchronized void clear()
+    {
+        super.clear();
+        initialized = true;
+    }
+}
@@ -0,0 +1,341 @@
+package com.hudren.homevideo.image;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+import android.widget.ImageView.ScaleType;
+
+import com.android.volley.Cache;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.ImageLoader;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Image loader that decodes posters at the size of the view displaying them. The cache key of
+ * every image includes the requested size, so a poster shown at different sizes is cached once per
+ * size. Posters are decoded into bitmaps from the pool when possible.
+ * <p>
+ * Requests are queued with the priority set by the caller, so posters of visible views are loaded
+ * before prefetched posters and those before any others. Prefetched posters are kept in their own
+ * partition of the cache until displayed.
+ * <p>
+ * When the server resizes images, posters from the server are requested at the width of the view,
+ * which takes a fraction of the bytes of the full poster. Otherwise the full poster is downloaded
+ * and only downsampled while decoding.
+ */
+public class PosterLoader extends ImageLoader
+{
+    private static final String TAG = "PosterLoader";
+
+    /**
+     * Requested widths are rounded up to a multiple of this, so views of similar size share the
+     * cached images.
+     */
+    private static final int WIDTH_STEP = 16;
+
+    /**
+     * Thumbnails are decoded to fit this size, so they are cached once for views of any size.
+     */
+    private static final int THUMB_SIZE = 256;
+
+    private final RequestQueue queue;
+    private final BitmapCache cache;
+    private final BitmapPool pool;
+
+    /**
+     * Tags the prefetch requests so they can be cancelled together.
+     */
+    private final Object prefetchTag = new Object();
+
+    /**
+     * The cache keys of the posters being prefetched.
+     */
+    private final Set<String> prefetching = new HashSet<>();
+
+    /**
+     * The priority of requests made by get, only used on the main thread.
+     */
+    private Request.Priority priority = Request.Priority.LOW;
+
+    /**
+     * The url of the server resizing its images, or null if images are resized locally.
+     */
+    private volatile String resizingServer;
+
+    public PosterLoader( RequestQueue queue, BitmapCache cache, BitmapPool pool )
+    {
+        super( queue, cache );
+
+        this.queue = queue;
+        this.cache = cache;
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the priority of the requests made by the following calls to get. Requests already made
+     * keep their priority, also when joined by a later call for the same image.
+     *
+     * @param priority The priority
+     * @return The previous priority
+     */
+    public Request.Priority setPriority( Request.Priority priority )
+    {
+        Request.Priority previous = this.priority;
+        this.priority = priority;
+
+        return previous;
+    }
+
+    /**
+     * Sets the server that resizes its images on request.
+     *
+     * @param url The server url, or null if the server does not resize images
+     */
+    public void setResizingServer( String url )
+    {
+        resizingServer = url;
+    }
+
+    /**
+     * Returns the url of an image no wider than needed by the view, if the image is on the server
+     * set to resize images.
+     *
+     * @param url      The image url
+     * @param maxWidth The maximum width of the view in pixels, or zero for no limit
+     * @return The url of the resized image, or the image url
+     */
+    private String getSizedUrl( String url, int maxWidth )
+    {
+        return getSizedUrl( url, maxWidth, resizingServer );
+    }
+
+    /**
+     * Returns the url of an image no wider than needed by the view, if the image is on a server
+     * that resizes images. The width is rounded up so views of similar size share the images.
+     *
+     * @param url      The image url
+     * @param maxWidth The maximum width of the view in pixels, or zero for no limit
+     * @param server   The url of the server resizing its images, or null
+     * @return The url of the resized image, or the image url
+     */
+    public static String getSizedUrl( String url, int maxWidth, String server )
+    {
+        if ( server == null || maxWidth <= 0 || !url.startsWith( server ) )
+            return url;
+
+        // Only images on the server itself
+        if ( url.length() > server.length() && url.charAt( server.length() ) != '/' )
+            return url;
+
+        int width = (maxWidth + WIDTH_STEP - 1) / WIDTH_STEP * WIDTH_STEP;
+
+        return url + (url.indexOf( '?' ) < 0 ? "?w=" : "&w=") + width;
+    }
+
+    /**
+     * Returns the key of an image in the memory cache, which is the key used by ImageLoader.
+     *
+     * @param url       The image url
+     * @param maxWidth  The maximum width, or zero for no limit
+     * @param maxHeight The maximum height, or zero for no limit
+     * @param scaleType The scale type of the view displaying the image
+     * @return The cache key
+     */
+    public static String getCacheKey( String url, int maxWidth, int maxHeight, ScaleType scaleType )
+    {
+        return "#W" + maxWidth + "#H" + maxHeight + "#S" + scaleType.ordinal() + url;
+    }
+
+    /**
+     * Returns whether an image is in the memory cache, without counting as a use of the image.
+     *
+     * @param url       The image url
+     * @param maxWidth  The maximum width, or zero for no limit
+     * @param maxHeight The maximum height, or zero for no limit
+     * @param scaleType The scale type of the view displaying the image
+     * @return True, if the image is cached
+     */
+    public boolean contains( String url, int maxWidth, int maxHeight, ScaleType scaleType )
+    {
+        return cache.contains( getCacheKey( url, maxWidth, maxHeight, scaleType ) );
+    }
+
+    /**
+     * Returns a thumbnail from the memory cache.
+     *
+     * @param url The thumbnail url
+     * @return The thumbnail, or null if not cached
+     */
+    public Bitmap getThumb( String url )
+    {
+        return cache.getBitmap( getCacheKey( url, THUMB_SIZE, THUMB_SIZE, ScaleType.CENTER_INSIDE ) );
+    }
+
+    /**
+     * Loads a thumbnail into the memory cache. Must be called from the main thread.
+     *
+     * @param url      The thumbnail url
+     * @param listener Receives the thumbnail
+     * @param priority The priority of the request
+     * @return The request, which can be cancelled
+     */
+    public Request<?> loadThumb( String url, final Response.Listener<Bitmap> listener, Request.Priority priority )
+    {
+        final String key = getCacheKey( url, THUMB_SIZE, THUMB_SIZE, ScaleType.CENTER_INSIDE );
+
+        PosterRequest request = new PosterRequest( getSizedUrl( url, THUMB_SIZE ), new Response.Listener<Bitmap>()
+        {
+            @Override
+            public void onResponse( Bitmap response )
+            {
+                cache.putBitmap( key, response );
+                listener.onResponse( response );
+            }
+
+        }, THUMB_SIZE, THUMB_SIZE, ScaleType.CENTER_INSIDE, Bitmap.Config.RGB_565, pool, null );
+
+        request.setPriority( priority );
+        queue.add( request );
+
+        return request;
+    }
+
+    /**
+     * Decodes posters stored in the disk cache into the memory cache, so they can be displayed
+     * immediately without waiting for the network. Posters are used even if they have expired, as
+     * the server may not be reachable yet. Must be called from a background thread.
+     *
+     * @param urls      The poster urls
+     * @param maxWidth  The maximum width of the view displaying the posters
+     * @param maxHeight The maximum height of the view displaying the posters
+     * @param scaleType The scale type of the view displaying the posters
+     * @return The number of posters loaded
+     */
+    public int prewarm( List<String> urls, int maxWidth, int maxHeight, ScaleType scaleType )
+    {
+        Cache disk = queue.getCache();
+        disk.initialize();
+
+        int count = 0;
+        for ( String url : urls )
+        {
+            String key = getCacheKey( url, maxWidth, maxHeight, scaleType );
+            if ( cache.contains( key ) )
+                continue;
+
+            Cache.Entry entry = disk.get( getSizedUrl( url, maxWidth ) );
+            if ( entry == null || entry.data == null )
+                continue;
+
+            synchronized ( PosterRequest.DECODE_LOCK )
+            {
+                try
+                {
+                    Bitmap bitmap = PosterRequest.decode( entry.data, maxWidth, maxHeight, scaleType, Bitmap.Config.RGB_565, pool );
+                    if ( bitmap != null )
+                    {
+                        cache.putBitmap( key, bitmap );
+                        count++;
+                    }
+                }
+                catch ( OutOfMemoryError e )
+                {
+                    Log.e( TAG, "out of memory decoding " + url );
+                }
+            }
+        }
+
+        Log.d( TAG, "prewarmed " + count + " of " + urls.size() + " posters" );
+        return count;
+    }
+
+    /**
+     * Loads a poster into the prefetch partition of the cache, unless it is already cached or
+     * being prefetched. Must be called from the main thread.
+     *
+     * @param url       The poster url
+     * @param maxWidth  The maximum width of the view that will display the poster
+     * @param maxHeight The maximum height of the view that will display the poster
+     * @param scaleType The scale type of the view that will display the poster
+     */
+    public void prefetch( String url, int maxWidth, int maxHeight, ScaleType scaleType )
+    {
+        final String key = getCacheKey( url, maxWidth, maxHeight, scaleType );
+        if ( prefetching.contains( key ) || cache.contains( key ) )
+            return;
+
+        PosterRequest request = new PosterRequest( getSizedUrl( url, maxWidth ), new Response.Listener<Bitmap>()
+        {
+            @Override
+            public void onResponse( Bitmap response )
+            {
+                prefetching.remove( key );
+                cache.putPrefetched( key, response );
+            }
+
+        }, maxWidth, maxHeight, scaleType, Bitmap.Config.RGB_565, pool, new Response.ErrorListener()
+        {
+            @Override
+            public void onErrorResponse( VolleyError error )
+            {
+                prefetching.remove( key );
+            }
+
+        } );
+
+        request.setPriority( Request.Priority.NORMAL );
+        request.setTag( prefetchTag );
+
+        prefetching.add( key );
+        queue.add( request );
+    }
+
+    /**
+     * Cancels the posters being prefetched. Must be called from the main thread.
+     */
+    public void cancelPrefetch()
+    {
+        queue.cancelAll( prefetchTag );
+        prefetching.clear();
+    }
+
+    /**
+     * Returns the number of posters being prefetched.
+     *
+     * @return The number of requests
+     */
+    public int getPrefetchCount()
+    {
+        return prefetching.size();
+    }
+
+    @Override
+    protected Request<Bitmap> makeImageRequest( String requestUrl, int maxWidth, int maxHeight, ScaleType scaleType, final String cacheKey )
+    {
+        PosterRequest request = new PosterRequest( getSizedUrl( requestUrl, maxWidth ), new Response.Listener<Bitmap>()
+        {
+            @Override
+            public void onResponse( Bitmap response )
+            {
+                onGetImageSuccess( cacheKey, response );
+            }
+
+        }, maxWidth, maxHeight, scaleType, Bitmap.Config.RGB_565, pool, new Response.ErrorListener()
+        {
+            @Override
+            public void onErrorResponse( VolleyError error )
+            {
+                onGetImageError( cacheKey, error );
+            }
+
+        } );
+
+        request.setPriority( priority );
+        return request;
+    }
+}
@@ -0,0 +1,303 @@
+package com.hudren.homevideo.image;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.widget.ImageView.ScaleType;
+
+import com.android.volley.Cache;
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.VolleyLog;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+/**
+ * Requests a poster and decodes it at the size it will be displayed. The image is subsampled by
+ * the largest power of two that keeps it at least as large as the target, then scaled to the
+ * target while decoding, so the full resolution image is never held in memory. When a pool is
+ * given, the image is decoded into a pooled bitmap if one is large enough.
+ * <p>
+ * The server does not send caching headers for posters, so posters without them are cached for a
+ * fixed time and revalidated in the background once they become stale.
+ */
+public class PosterRequest extends Request<Bitmap>
+{
+    private static final int TIMEOUT_MS = 1000;
+    private static final int MAX_RETRIES = 2;
+    private static final float BACKOFF_MULT = 2f;
+
+    /**
+     * How long a cached poster is used before it is revalidated.
+     */
+    private static final long REFRESH_MS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * How long a cached poster is used at all.
+     */
+    private static final long EXPIRE_MS = 30 * REFRESH_MS;
+
+    /**
+     * Decoding is serialized to limit the memory used at any one time.
+     */
+    static final Object DECODE_LOCK = new Object();
+
+    private final Response.Listener<Bitmap> listener;
+    private final int maxWidth;
+    private final int maxHeight;
+    private final ScaleType scaleType;
+    private final Bitmap.Config config;
+    private final BitmapPool pool;
+    private Priority priority = Priority.LOW;
+
+    /**
+     * Creates a request for a poster.
+     *
+     * @param url           The poster url
+     * @param listener      Receives the decoded poster
+     * @param maxWidth      The maximum width, or zero for no limit
+     * @param maxHeight     The maximum height, or zero for no limit
+     * @param scaleType     The scale type of the view displaying the poster
+     * @param config        The bitmap configuration
+     * @param pool          The pool of reusable bitmaps, or null
+     * @param errorListener Receives the error if the poster could not be loaded
+     */
+    public PosterRequest( String url, Response.Listener<Bitmap> listener, int maxWidth, int maxHeight, ScaleType scaleType, Bitmap.Config config, BitmapPool pool, Response.ErrorListener errorListener )
+    {
+        super( Method.GET, url, errorListener );
+
+        setRetryPolicy( new DefaultRetryPolicy( TIMEOUT_MS, MAX_RETRIES, BACKOFF_MULT ) );
+        setShouldCache( true );
+
+        this.listener = listener;
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.scaleType = scaleType;
+        this.config = config;
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the priority of the request, which must be set before the request is queued.
+     *
+     * @param priority The priority
+     */
+    public void setPriority( Priority priority )
+    {
+        this.priority = priority;
+    }
+
+    @Override
+    public Priority getPriority()
+    {
+        return priority;
+    }
+
+    @Override
+    protected Response<Bitmap> parseNetworkResponse( NetworkResponse response )
+    {
+        synchronized ( DECODE_LOCK )
+        {
+            try
+            {
+                Bitmap bitmap = decode( response.data, maxWidth, maxHeight, scaleType, config, pool );
+                if ( bitmap == null )
+                    return Response.error( new ParseError( response ) );
+
+                return Response.success( bitmap, parseCacheEntry( response ) );
+            }
+            catch ( OutOfMemoryError e )
+            {
+                VolleyLog.e( "Caught OOM for %d byte image, url=%s", response.data.length, getUrl() );
+                return Response.error( new ParseError( e ) );
+            }
+        }
+    }
+
+    /**
+     * Returns the cache entry of a poster, which is cached for a fixed time if the server did not
+     * specify how long it may be cached.
+     *
+     * @param response The network response
+     * @return The cache entry
+     */
+    private static Cache.Entry parseCacheEntry( NetworkResponse response )
+    {
+        Cache.Entry entry = HttpHeaderParser.parseCacheHeaders( response );
+        if ( entry == null )
+            return null;
+
+        long now = System.currentTimeMillis();
+        if ( entry.ttl <= now )
+        {
+            entry.softTtl = now + REFRESH_MS;
+            entry.ttl = now + EXPIRE_MS;
+        }
+
+        return entry;
+    }
+
+    @Override
+    protected void deliverResponse( Bitmap response )
+    {
+        listener.onResponse( response );
+    }
+
+    /**
+     * Decodes the image no larger than needed to fill the maximum size.
+     *
+     * @param data      The encoded image
+     * @param maxWidth  The maximum width, or zero for no limit
+     * @param maxHeight The maximum height, or zero for no limit
+     * @param scaleType The scale type of the view displaying the image
+     * @param config    The bitmap configuration
+     * @param pool      The pool of reusable bitmaps, or null
+     * @return The bitmap, or null if the image could not be decoded
+     */
+    static Bitmap decode( byte[] data, int maxWidth, int maxHeight, ScaleType scaleType, Bitmap.Config config, BitmapPool pool )
+    {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = config;
+
+        // Read the dimensions only
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray( data, 0, data.length, options );
+        int width = options.outWidth;
+        int height = options.outHeight;
+        if ( width <= 0 || height <= 0 )
+            return null;
+
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+
+        if ( maxWidth == 0 && maxHeight == 0 )
+            return decode( data, options, width, height, pool );
+
+        int targetWidth = getResizedDimension( maxWidth, maxHeight, width, height, scaleType );
+        int targetHeight = getResizedDimension( maxHeight, maxWidth, height, width, scaleType );
+
+        options.inSampleSize = getSampleSize( width, height, targetWidth, targetHeight );
+
+        // Scale the rest of the way while decoding
+        int sampledWidth = width / options.inSampleSize;
+        int sampledHeight = height / options.inSampleSize;
+        int outWidth = sampledWidth;
+        int outHeight = sampledHeight;
+        if ( targetWidth < sampledWidth )
+        {
+            options.inScaled = true;
+            options.inDensity = sampledWidth;
+            options.inTargetDensity = targetWidth;
+
+            outWidth = targetWidth;
+            outHeight = (int) Math.ceil( (double) sampledHeight * targetWidth / sampledWidth );
+        }
+
+        Bitmap bitmap = decode( data, options, outWidth, outHeight, pool );
+        if ( bitmap != null )
+            bitmap.setDensity( Bitmap.DENSITY_NONE );
+
+        return bitmap;
+    }
+
+    /**
+     * Decodes the image, into a pooled bitmap if possible.
+     *
+     * @param data    The encoded image
+     * @param options The decoding options
+     * @param width   The width of the decoded image
+     * @param height  The height of the decoded image
+     * @param pool    The pool of reusable bitmaps, or null
+     * @return The bitmap, or null if the image could not be decoded
+     */
+    private static Bitmap decode( byte[] data, BitmapFactory.Options options, int width, int height, BitmapPool pool )
+    {
+        if ( pool != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT )
+        {
+            // Allow for rounding when scaling
+            options.inBitmap = pool.get( width + 1, height + 1, options.inPreferredConfig );
+
+            if ( options.inBitmap != null )
+            {
+                try
+                {
+                    return BitmapFactory.decodeByteArray( data, 0, data.length, options );
+                }
+                catch ( IllegalArgumentException e )
+                {
+                    // Bitmap could not be reused
+                    options.inBitmap = null;
+                }
+            }
+        }
+
+        return BitmapFactory.decodeByteArray( data, 0, data.length, options );
+    }
+
+    /**
+     * Returns the size of one side of the image scaled to fit the maximum size while keeping its
+     * aspect ratio.
+     *
+     * @param maxPrimary      The maximum size of the side, or zero for no limit
+     * @param maxSecondary    The maximum size of the other side, or zero for no limit
+     * @param actualPrimary   The image size of the side
+     * @param actualSecondary The image size of the other side
+     * @param scaleType       The scale type of the view displaying the image
+     * @return The scaled size of the side
+     */
+    static int getResizedDimension( int maxPrimary, int maxSecondary, int actualPrimary, int actualSecondary, ScaleType scaleType )
+    {
+        if ( maxPrimary == 0 && maxSecondary == 0 )
+            return actualPrimary;
+
+        // Image fills the view and is not scaled
+        if ( scaleType == ScaleType.FIT_XY )
+            return maxPrimary == 0 ? actualPrimary : maxPrimary;
+
+        double ratio = (double) actualSecondary / (double) actualPrimary;
+
+        if ( maxPrimary == 0 )
+            return (int) (maxSecondary / ratio);
+
+        if ( maxSecondary == 0 )
+            return maxPrimary;
+
+        int resized = maxPrimary;
+
+        // Image is cropped to fill the view
+        if ( scaleType == ScaleType.CENTER_CROP )
+        {
+            if ( resized * ratio < maxSecondary )
+                resized = (int) (maxSecondary / ratio);
+
+            return resized;
+        }
+
+        if ( resized * ratio > maxSecondary )
+            resized = (int) (maxSecondary / ratio);
+
+        return resized;
+    }
+
+    /**
+     * Returns the largest power of two sample size that keeps the image at least as large as the
+     * target size.
+     *
+     * @param width        The image width
+     * @param height       The image height
+     * @param targetWidth  The target width
+     * @param targetHeight The target height
+     * @return The sample size
+     */
+    static int getSampleSize( int width, int height, int targetWidth, int targetHeight )
+    {
+        int sample = 1;
+
+        while ( width / (sample * 2) >= targetWidth && height / (sample * 2) >= targetHeight )
+            sample *= 2;
+
+        return sample;
+    }
+}
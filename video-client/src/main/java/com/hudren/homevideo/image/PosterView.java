@@ -0,0 +1,289 @@
+package com.hudren.homevideo.image;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.util.AttributeSet;
+
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.toolbox.ImageLoader;
+import com.android.volley.toolbox.NetworkImageView;
+import com.hudren.homevideo.NetworkManager;
+
+/**
+ * Displays a poster loaded over the network, and reports the bitmap it displays to the bitmap pool
+ * so that a bitmap evicted from the cache is not reused while it is still on screen.
+ * <p>
+ * The poster is requested with high priority, as the view is being laid out to be shown. A view
+ * scrolled out of sight cancels its request so it does not delay the posters of visible views.
+ * <p>
+ * When a thumbnail is given, it is displayed while the poster loads, immediately if it is cached.
+ * Thumbnails go through the same loader and memory cache as the posters.
+ */
+public class PosterView extends NetworkImageView
+{
+    private Bitmap displayed;
+
+    private String url;
+    private String thumbUrl;
+    private ImageLoader loader;
+    private Request<?> thumbRequest;
+    private Request.Priority priority = Request.Priority.HIGH;
+
+    public PosterView( Context context )
+    {
+        super( context );
+    }
+
+    public PosterView( Context context, AttributeSet attrs )
+    {
+        super( context, attrs );
+    }
+
+    public PosterView( Context context, AttributeSet attrs, int defStyle )
+    {
+        super( context, attrs, defStyle );
+    }
+
+    /**
+     * Sets the priority of the poster requests made by the view.
+     *
+     * @param priority The priority
+     */
+    public void setPriority( Request.Priority priority )
+    {
+        this.priority = priority;
+    }
+
+    @Override
+    public void setImageUrl( String url, ImageLoader loader )
+    {
+        setImageUrl( url, null, loader );
+    }
+
+    /**
+     * Sets the poster to display, showing the thumbnail until the poster has been loaded.
+     *
+     * @param url      The poster url
+     * @param thumbUrl The thumbnail url, or null
+     * @param loader   The image loader
+     */
+    public void setImageUrl( String url, String thumbUrl, ImageLoader loader )
+    {
+        if ( thumbUrl == null || !thumbUrl.equals( this.thumbUrl ) )
+            cancelThumb();
+
+        this.url = url;
+        this.thumbUrl = thumbUrl;
+        this.loader = loader;
+
+        Request.Priority previous = setLoaderPriority( priority );
+        super.setImageUrl( url, loader );
+        setLoaderPriority( previous );
+
+        showThumb();
+    }
+
+    @Override
+    protected void onLayout( boolean changed, int left, int top, int right, int bottom )
+    {
+        // The poster is requested once the size of the view is known
+        Request.Priority previous = setLoaderPriority( priority );
+        super.onLayout( changed, left, top, right, bottom );
+        setLoaderPriority( previous );
+
+        showThumb();
+    }
+
+    @Override
+    protected void onDetachedFromWindow()
+    {
+        cancelThumb();
+
+        super.onDetachedFromWindow();
+    }
+
+    private Request.Priority setLoaderPriority( Request.Priority priority )
+    {
+        if ( loader instanceof PosterLoader && priority != null )
+            return ((PosterLoader) loader).setPriority( priority );
+
+        return null;
+    }
+
+    /**
+     * Displays the thumbnail while the poster is loading, loading the thumbnail if needed.
+     */
+    private void showThumb()
+    {
+        if ( thumbUrl == null || url == null || displayed != null || !(loader instanceof PosterLoader) )
+            return;
+
+        PosterLoader posterLoader = (PosterLoader) loader;
+
+        // A cached poster is displayed right after layout
+        LayoutParams params = getLayoutParams();
+        boolean wrapWidth = params != null && params.width == LayoutParams.WRAP_CONTENT;
+        boolean wrapHeight = params != null && params.height == LayoutParams.WRAP_CONTENT;
+        if ( (getWidth() > 0 || wrapWidth) && (getHeight() > 0 || wrapHeight) )
+        {
+            if ( posterLoader.contains( url, wrapWidth ? 0 : getWidth(), wrapHeight ? 0 : getHeight(), getScaleType() ) )
+                return;
+        }
+
+        Bitmap thumb = posterLoader.getThumb( thumbUrl );
+        if ( thumb != null )
+            setThumb( thumb );
+
+        else if ( thumbRequest == null )
+        {
+            thumbRequest = posterLoader.loadThumb( thumbUrl, new Response.Listener<Bitmap>()
+            {
+                @Override
+                public void onResponse( Bitmap response )
+                {
+                    thumbRequest = null;
+
+                    if ( displayed == null )
+                        setThumb( response );
+                }
+
+            }, priority );
+        }
+    }
+
+    /**
+     * Displays the thumbnail at the size the poster will have, as far as it is known.
+     *
+     * @param thumb The thumbnail
+     */
+    private void setThumb( Bitmap thumb )
+    {
+        LayoutParams params = getLayoutParams();
+        int width = params != null && params.width > 0 ? params.width : getWidth();
+        int height = params != null && params.height > 0 ? params.height : 0;
+
+        setImageDrawable( new ThumbDrawable( getResources(), thumb, width, height ) );
+    }
+
+    private void cancelThumb()
+    {
+        if ( thumbRequest != null )
+        {
+            thumbRequest.cancel();
+            thumbRequest = null;
+        }
+    }
+
+    /**
+     * Returns whether the poster is still being loaded.
+     *
+     * @return True, if a poster is requested but not displayed
+     */
+    public boolean isLoading()
+    {
+        return url != null && (displayed == null || getDrawable() instanceof ThumbDrawable);
+    }
+
+    /**
+     * Cancels loading the poster, clearing the url so the poster is requested again when the url
+     * is set.
+     *
+     * @return True, if the poster was being loaded
+     */
+    public boolean cancel()
+    {
+        if ( !isLoading() )
+            return false;
+
+        setImageUrl( null, loader );
+        return true;
+    }
+
+    /**
+     * Also called by setImageBitmap, which NetworkImageView uses for the loaded and cleared images.
+     */
+    @Override
+    public void setImageDrawable( Drawable drawable )
+    {
+        super.setImageDrawable( drawable );
+
+        Bitmap bitmap = drawable instanceof BitmapDrawable ? ((BitmapDrawable) drawable).getBitmap() : null;
+
+        // The poster replaces the thumbnail
+        if ( bitmap != null && !(drawable instanceof ThumbDrawable) )
+            cancelThumb();
+
+        setDisplayed( bitmap );
+    }
+
+    @Override
+    public void setImageResource( int resId )
+    {
+        super.setImageResource( resId );
+
+        setDisplayed( null );
+    }
+
+    private void setDisplayed( Bitmap bitmap )
+    {
+        if ( bitmap != displayed )
+        {
+            BitmapPool pool = NetworkManager.getInstance( getContext() ).getBitmapPool();
+            if ( pool != null )
+                pool.setDisplayed( displayed, bitmap );
+
+            displayed = bitmap;
+        }
+    }
+
+    /**
+     * Draws a thumbnail scaled up to the size of the poster, so the view does not change size when
+     * the poster replaces it.
+     */
+    private static class ThumbDrawable extends BitmapDrawable
+    {
+        private final int width;
+        private final int height;
+
+        /**
+         * Creates the drawable.
+         *
+         * @param res       The resources
+         * @param bitmap    The thumbnail
+         * @param maxWidth  The width of the poster, or zero if unknown
+         * @param maxHeight The height of the poster, or zero if unknown
+         */
+        ThumbDrawable( Resources res, Bitmap bitmap, int maxWidth, int maxHeight )
+        {
+            super( res, bitmap );
+
+            float scale = 1;
+            if ( maxWidth > 0 )
+                scale = (float) maxWidth / bitmap.getWidth();
+            if ( maxHeight > 0 )
+                scale = maxWidth > 0 ? Math.min( scale, (float) maxHeight / bitmap.getHeight() ) : (float) maxHeight / bitmap.getHeight();
+
+            // Larger thumbnails are scaled down by the view
+            scale = Math.max( 1, scale );
+
+            width = Math.round( bitmap.getWidth() * scale );
+            height = Math.round( bitmap.getHeight() * scale );
+        }
+
+        @Override
+        public int getIntrinsicWidth()
+        {
+            return width;
+        }
+
+        @Override
+        public int getIntrinsicHeight()
+        {
+            return height;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.hudren.homevideo.image;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps released buffers bucketed by their allocated size, so they can be reused for content of
+ * about the same size. A request reuses the smallest buffer large enough for the content, and is
+ * counted in the hit rate and bytes reused.
+ * <p>
+ * A buffer released while it is still displayed is only pooled once no view displays it any more.
+ *
+ * @param <T> The pooled type
+ */
+abstract class ReusePool<T>
+{
+    /**
+     * A pooled buffer is only reused for content needing at least this fraction of its size.
+     */
+    private static final int MAX_WASTE_FACTOR = 2;
+
+    private final int maxBytes;
+    private int size;
+
+    private final TreeMap<Integer, LinkedList<T>> buckets = new TreeMap<>();
+    private final Map<T, Integer> displayed = new IdentityHashMap<>();
+    private final Map<T, Boolean> evicted = new IdentityHashMap<>();
+
+    private int requests;
+    private int hits;
+    private long bytesReused;
+
+    /**
+     * Creates a pool.
+     *
+     * @param maxBytes The maximum total size of the pooled buffers
+     */
+    ReusePool( int maxBytes )
+    {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the memory allocated for a buffer.
+     *
+     * @param item The buffer
+     * @return The size in bytes
+     */
+    abstract int sizeOf( T item );
+
+    /**
+     * Returns whether a buffer can still be reused.
+     *
+     * @param item The buffer
+     * @return True, if the buffer can be reused
+     */
+    abstract boolean isReusable( T item );
+
+    /**
+     * Adds a buffer that is no longer used to the pool.
+     *
+     * @param item The buffer
+     */
+    synchronized void release( T item )
+    {
+        if ( item == null || !isReusable( item ) )
+            return;
+
+        // Wait until the buffer is no longer displayed
+        if ( displayed.containsKey( item ) )
+        {
+            evicted.put( item, Boolean.TRUE );
+            return;
+        }
+
+        add( item );
+    }
+
+    private void add( T item )
+    {
+        int bytes = sizeOf( item );
+        if ( bytes > maxBytes )
+            return;
+
+        LinkedList<T> bucket = buckets.get( bytes );
+        if ( bucket == null )
+        {
+            bucket = new LinkedList<>();
+            buckets.put( bytes, bucket );
+        }
+
+        bucket.addLast( item );
+        size += bytes;
+
+        trimToSize( maxBytes );
+    }
+
+    /**
+     * Removes a buffer from the pool that can hold the content.
+     *
+     * @param needed The size of the content in bytes
+     * @return The buffer, or null if there is no buffer that can be reused
+     */
+    synchronized T acquire( int needed )
+    {
+        requests++;
+
+        Map.Entry<Integer, LinkedList<T>> entry = buckets.ceilingEntry( needed );
+
+        while ( entry != null && entry.getKey() <= (long) needed * MAX_WASTE_FACTOR )
+        {
+            LinkedList<T> bucket = entry.getValue();
+            T item = bucket.removeFirst();
+            if ( bucket.isEmpty() )
+                buckets.remove( entry.getKey() );
+
+            size -= entry.getKey();
+
+            if ( isReusable( item ) )
+            {
+                hits++;
+                bytesReused += entry.getKey();
+
+                return item;
+            }
+
+            entry = buckets.ceilingEntry( needed );
+        }
+
+        return null;
+    }
+
+    /**
+     * Records that a view displays a buffer instead of another.
+     *
+     * @param previous The buffer previously displayed by the view, or null
+     * @param current  The buffer now displayed by the view, or null
+     */
+    public synchronized void setDisplayed( T previous, T current )
+    {
+        if ( previous == current )
+            return;
+
+        if ( current != null )
+        {
+            Integer count = displayed.get( current );
+            displayed.put( current, count != null ? count + 1 : 1 );
+        }
+
+        if ( previous != null )
+        {
+            Integer count = displayed.remove( previous );
+            if ( count != null && count > 1 )
+                displayed.put( previous, count - 1 );
+
+            // Pool the buffer evicted while displayed
+            else if ( evicted.remove( previous ) != null )
+                add( previous );
+        }
+    }
+
+    /**
+     * Releases the pooled buffers.
+     *
+     * @param maxBytes The maximum size of the buffers kept
+     */
+    public synchronized void trimToSize( int maxBytes )
+    {
+        // Drop the largest buffers first
+        while ( size > maxBytes && !buckets.isEmpty() )
+        {
+            Map.Entry<Integer, LinkedList<T>> entry = buckets.lastEntry();
+            entry.getValue().removeFirst();
+            if ( entry.getValue().isEmpty() )
+                buckets.remove( entry.getKey() );
+
+            size -= entry.getKey();
+        }
+    }
+
+    /**
+     * Releases all pooled buffers.
+     */
+    public synchronized void clear()
+    {
+        trimToSize( 0 );
+        evicted.clear();
+    }
+
+    /**
+     * Returns the fraction of requests that reused a pooled buffer.
+     *
+     * @return The hit rate, between 0 and 1
+     */
+    public synchronized float getHitRate()
+    {
+        return requests > 0 ? (float) hits / requests : 0;
+    }
+
+    public synchronized int getRequestCount()
+    {
+        return requests;
+    }
+
+    public synchronized int getHitCount()
+    {
+        return hits;
+    }
+
+    /**
+     * Returns the total size of the buffers reused.
+     *
+     * @return The size in bytes
+     */
+    public synchronized long getBytesReused()
+    {
+        return bytesReused;
+    }
+
+    /**
+     * Returns the total size of the pooled buffers.
+     *
+     * @return The size in bytes
+     */
+    public synchronized int getSize()
+    {
+        return size;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return getClass().getSimpleName() + "[size=" + size + "/" + maxBytes + ", requests=" + requests
+                + ", hits=" + hits + ", reused=" + bytesReused + "]";
+    }
+}
@@ -0,0 +1,88 @@
+package com.hudren.homevideo.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents the changes to the titles catalog since a previous version, identified by title id.
+ */
+public class CatalogDelta
+{
+    public String version;
+
+    public List<Title> added = Collections.emptyList();
+    public List<Title> changed = Collections.emptyList();
+    public List<String> removed = Collections.emptyList();
+
+    /**
+     * Returns whether the delta contains any changes.
+     *
+     * @return True, if no titles were added, changed or removed
+     */
+    public boolean isEmpty()
+    {
+        return isEmpty( added ) && isEmpty( changed ) && isEmpty( removed );
+    }
+
+    private static boolean isEmpty( List<?> list )
+    {
+        return list == null || list.isEmpty();
+    }
+
+    /**
+     * Returns the titles that were added or changed.
+     *
+     * @return The new title instances
+     */
+    public List<Title> getUpdated()
+    {
+        List<Title> updated = new ArrayList<>();
+
+        if ( added != null )
+            updated.addAll( added );
+        if ( changed != null )
+            updated.addAll( changed );
+
+        return updated;
+    }
+
+    /**
+     * Applies the changes to the catalog. Titles that did not change are carried over as is,
+     * keeping their position.
+     *
+     * @param titles The current catalog
+     * @return The updated catalog
+     */
+    public List<Title> apply( List<Title> titles )
+    {
+        Map<String, Title> catalog = new LinkedHashMap<>();
+        for ( Title title : titles )
+            catalog.put( title.id, title );
+
+        if ( removed != null )
+            for ( String id : removed )
+                catalog.remove( id );
+
+        Map<String, Title> updated = new HashMap<>();
+        for ( Title title : getUpdated() )
+            updated.put( title.id, title );
+
+        List<Title> result = new ArrayList<>( catalog.size() + updated.size() );
+        for ( Title title : catalog.values() )
+        {
+            Title update = updated.remove( title.id );
+            result.add( update != null ? update : title );
+        }
+
+        // Titles that are new to this client
+        for ( Title title : getUpdated() )
+            if ( updated.containsKey( title.id ) )
+                result.add( title );
+
+        return result;
+    }
+}
@@ -0,0 +1,503 @@
+package com.hudren.homevideo.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes a compact binary snapshot of the ranked titles catalog. Loading a snapshot
+ * requires neither reflection nor ranking, the titles are restored exactly as they were written.
+ * <p>
+ * Strings are written once and referenced by index afterwards, so repeated values such as codecs,
+ * mimetypes and languages take little space and share a single instance when read.
+ * <p>
+ * The header records the length and modification time of the catalog file the titles were loaded
+ * from, a snapshot is only read back while that file is unchanged.
+ */
+public class CatalogSnapshot
+{
+    private static final int MAGIC = 0x48564353;
+
+    /**
+     * The version of the snapshot format, snapshots written in other versions are not read.
+     */
+    private static final int VERSION = 2;
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private static final int NULL = -1;
+    private static final int NEW = -2;
+
+    private CatalogSnapshot()
+    {
+    }
+
+    /**
+     * Writes the ranked titles.
+     *
+     * @param out            The output
+     * @param titles         The titles
+     * @param sourceLength   The length of the catalog file the titles were loaded from
+     * @param sourceModified The modification time of the catalog file
+     * @throws IOException
+     */
+    public static void write( DataOutput out, List<Title> titles, long sourceLength, long sourceModified ) throws IOException
+    {
+        new Writer( out ).writeTitles( titles, sourceLength, sourceModified );
+    }
+
+    /**
+     * Reads the titles, which are marked as ranked.
+     *
+     * @param in             The input
+     * @param sourceLength   The length of the current catalog file
+     * @param sourceModified The modification time of the current catalog file
+     * @return The titles, or null if the snapshot was written in a different format or for a
+     * different catalog file
+     * @throws IOException
+     */
+    public static List<Title> read( DataInput in, long sourceLength, long sourceModified ) throws IOException
+    {
+        Reader reader = open( in, sourceLength, sourceModified );
+        return reader != null ? reader.read( reader.getRemaining() ) : null;
+    }
+
+    /**
+     * Opens a snapshot for reading its titles in chunks.
+     *
+     * @param in             The input
+     * @param sourceLength   The length of the current catalog file
+     * @param sourceModified The modification time of the current catalog file
+     * @return The reader, or null if the snapshot was written in a different format or for a
+     * different catalog file
+     * @throws IOException
+     */
+    public static Reader open( DataInput in, long sourceLength, long sourceModified ) throws IOException
+    {
+        Reader reader = new Reader( in );
+        return reader.readHeader( sourceLength, sourceModified ) ? reader : null;
+    }
+
+    private static class Writer
+    {
+        private final DataOutput out;
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        Writer( DataOutput out )
+        {
+            this.out = out;
+        }
+
+        void writeTitles( List<Title> titles, long sourceLength, long sourceModified ) throws IOException
+        {
+            out.writeInt( MAGIC );
+            out.writeInt( VERSION );
+            out.writeLong( sourceLength );
+            out.writeLong( sourceModified );
+
+            out.writeInt( titles.size() );
+            for ( Title title : titles )
+                writeTitle( title );
+        }
+
+        void writeTitle( Title title ) throws IOException
+        {
+            writeString( title.id );
+            writeString( title.title );
+            writeString( title.sorting );
+            writeString( title.poster );
+            writeString( title.thumb );
+
+            out.writeBoolean( title.info != null );
+            if ( title.info != null )
+                writeInfo( title.info );
+
+            out.writeInt( title.videos.size() );
+            for ( Video video : title.videos )
+                writeVideo( video );
+        }
+
+        void writeInfo( Info info ) throws IOException
+        {
+            writeString( info.title );
+            writeString( info.type );
+            out.writeLong( info.year );
+            writeString( info.rated );
+            writeString( info.runtime );
+            writeString( info.plot );
+            writeString( info.imdbId );
+            writeString( info.netflixId );
+
+            writeStrings( info.categories );
+            writeStrings( info.subjects );
+            writeStrings( info.genres );
+            writeStrings( info.directors );
+            writeStrings( info.stars );
+            writeStrings( info.actors );
+            writeStrings( info.languages );
+
+            out.writeInt( info.seasons != null ? info.seasons.size() : NULL );
+            if ( info.seasons != null )
+            {
+                for ( Map.Entry<Integer, Info.SeasonInfo> season : info.seasons.entrySet() )
+                {
+                    writeInteger( season.getKey() );
+                    writeString( season.getValue().title );
+
+                    Map<Integer, Info.EpisodeInfo> episodes = season.getValue().episodes;
+                    out.writeInt( episodes != null ? episodes.size() : NULL );
+                    if ( episodes != null )
+                    {
+                        for ( Map.Entry<Integer, Info.EpisodeInfo> episode : episodes.entrySet() )
+                        {
+                            writeInteger( episode.getKey() );
+                            writeString( episode.getValue().title );
+                        }
+                    }
+                }
+            }
+        }
+
+        void writeVideo( Video video ) throws IOException
+        {
+            writeString( video.title );
+            out.writeDouble( video.duration );
+            writeInteger( video.season );
+            writeInteger( video.episode );
+            writeString( video.episodeTitle );
+            writeString( video.language );
+            out.writeBoolean( video.isDownloaded() );
+
+            out.writeInt( video.containers.size() );
+            for ( Container container : video.containers )
+                writeContainer( container );
+
+            out.writeInt( video.subtitles != null ? video.subtitles.size() : NULL );
+            if ( video.subtitles != null )
+                for ( Subtitle subtitle : video.subtitles )
+                    writeSubtitle( subtitle );
+        }
+
+        void writeContainer( Container container ) throws IOException
+        {
+            writeString( container.filename );
+            writeString( container.filetype );
+            writeString( container.language );
+            out.writeLong( container.size );
+            out.writeLong( container.bitrate );
+            out.writeInt( container.width );
+            out.writeInt( container.height );
+            writeString( container.dimension );
+            writeString( container.video );
+            writeString( container.audio );
+            out.writeLong( container.modified );
+            writeString( container.url );
+            writeString( container.mimetype );
+        }
+
+        void writeSubtitle( Subtitle subtitle ) throws IOException
+        {
+            writeString( subtitle.title );
+            writeString( subtitle.language );
+            writeString( subtitle.filename );
+            writeString( subtitle.url );
+            writeString( subtitle.mimetype );
+        }
+
+        void writeStrings( List<String> values ) throws IOException
+        {
+            out.writeInt( values != null ? values.size() : NULL );
+            if ( values != null )
+                for ( String value : values )
+                    writeString( value );
+        }
+
+        void writeInteger( Integer value ) throws IOException
+        {
+            out.writeBoolean( value != null );
+            if ( value != null )
+                out.writeInt( value );
+        }
+
+        void writeString( String value ) throws IOException
+        {
+            if ( value == null )
+            {
+                out.writeInt( NULL );
+                return;
+            }
+
+            Integer index = strings.get( value );
+            if ( index != null )
+            {
+                out.writeInt( index );
+                return;
+            }
+
+            strings.put( value, strings.size() );
+
+            byte[] bytes = value.getBytes( UTF_8 );
+            out.writeInt( NEW );
+            out.writeInt( bytes.length );
+            out.write( bytes );
+        }
+    }
+
+    /**
+     * Reads the titles of a snapshot in chunks, so the first titles can be used while the rest are
+     * being read.
+     */
+    public static class Reader
+    {
+        private final DataInput in;
+        private final List<String> strings = new ArrayList<>();
+
+        // Reused for decoding every string
+        private byte[] buffer = new byte[256];
+
+        private int remaining;
+
+        private Reader( DataInput in )
+        {
+            this.in = in;
+        }
+
+        private boolean readHeader( long sourceLength, long sourceModified ) throws IOException
+        {
+            if ( in.readInt() != MAGIC || in.readInt() != VERSION )
+                return false;
+
+            // Written for a catalog that has since been replaced
+            if ( in.readLong() != sourceLength || in.readLong() != sourceModified )
+                return false;
+
+            remaining = in.readInt();
+            return true;
+        }
+
+        /**
+         * Returns the number of titles not read yet.
+         *
+         * @return The number of titles
+         */
+        public int getRemaining()
+        {
+            return remaining;
+        }
+
+        /**
+         * Reads the next titles, which are marked as ranked.
+         *
+         * @param count The maximum number of titles
+         * @return The titles, in snapshot order
+         * @throws IOException
+         */
+        public List<Title> read( int count ) throws IOException
+        {
+            count = Math.min( count, remaining );
+
+            List<Title> titles = new ArrayList<>( count );
+            for ( int i = 0; i < count; i++ )
+            {
+                titles.add( readTitle() );
+                remaining--;
+            }
+
+            return titles;
+        }
+
+        Title readTitle() throws IOException
+        {
+            Title title = new Title();
+            title.id = readString();
+            title.title = readString();
+            title.sorting = readString();
+            title.poster = readString();
+            title.thumb = readString();
+
+            if ( in.readBoolean() )
+                title.info = readInfo();
+
+            int count = in.readInt();
+            title.videos = new ArrayList<>( count );
+            for ( int i = 0; i < count; i++ )
+                title.videos.add( readVideo() );
+
+            title.setRanked();
+
+            return title;
+        }
+
+        Info readInfo() throws IOException
+        {
+            Info info = new Info();
+            info.title = readString();
+            info.type = readString();
+            info.year = in.readLong();
+            info.rated = readString();
+            info.runtime = readString();
+            info.plot = readString();
+            info.imdbId = readString();
+            info.netflixId = readString();
+
+            info.categories = readStrings();
+            info.subjects = readStrings();
+            info.genres = readStrings();
+            info.directors = readStrings();
+            info.stars = readStrings();
+            info.actors = readStrings();
+            info.languages = readStrings();
+
+            int seasons = in.readInt();
+            if ( seasons == NULL )
+                info.seasons = null;
+
+            else if ( seasons > 0 )
+            {
+                info.seasons = new HashMap<>( seasons * 2 );
+                for ( int i = 0; i < seasons; i++ )
+                {
+                    Integer index = readInteger();
+
+                    Info.SeasonInfo season = new Info.SeasonInfo();
+                    season.title = readString();
+
+                    int episodes = in.readInt();
+                    if ( episodes == NULL )
+                        season.episodes = null;
+
+                    else if ( episodes > 0 )
+                    {
+                        season.episodes = new HashMap<>( episodes * 2 );
+                        for ( int j = 0; j < episodes; j++ )
+                        {
+                            Integer key = readInteger();
+
+                            Info.EpisodeInfo episode = new Info.EpisodeInfo();
+                            episode.title = readString();
+
+                            season.episodes.put( key, episode );
+                        }
+                    }
+
+                    info.seasons.put( index, season );
+                }
+            }
+
+            return info;
+        }
+
+        Video readVideo() throws IOException
+        {
+            Video video = new Video();
+            video.title = readString();
+            video.duration = in.readDouble();
+            video.season = readInteger();
+            video.episode = readInteger();
+            video.episodeTitle = readString();
+            video.language = readString();
+            video.setDownloaded( in.readBoolean() );
+
+            int count = in.readInt();
+            video.containers = new ArrayList<>( count );
+            for ( int i = 0; i < count; i++ )
+                video.containers.add( readContainer() );
+
+            count = in.readInt();
+            if ( count == NULL )
+                video.subtitles = null;
+
+            else if ( count > 0 )
+            {
+                video.subtitles = new ArrayList<>( count );
+                for ( int i = 0; i < count; i++ )
+                    video.subtitles.add( readSubtitle() );
+            }
+
+            // Containers were written in ranked order
+            video.derive();
+
+            return video;
+        }
+
+        Container readContainer() throws IOException
+        {
+            Container container = new Container();
+            container.filename = readString();
+            container.filetype = readString();
+            container.language = readString();
+            container.size = in.readLong();
+            container.bitrate = in.readLong();
+            container.width = in.readInt();
+            container.height = in.readInt();
+            container.dimension = readString();
+            container.video = readString();
+            container.audio = readString();
+            container.modified = in.readLong();
+            container.url = readString();
+            container.mimetype = readString();
+
+            return container;
+        }
+
+        Subtitle readSubtitle() throws IOException
+        {
+            Subtitle subtitle = new Subtitle();
+            subtitle.title = readString();
+            subtitle.language = readString();
+            subtitle.filename = readString();
+            subtitle.url = readString();
+            subtitle.mimetype = readString();
+
+            return subtitle;
+        }
+
+        List<String> readStrings() throws IOException
+        {
+            int count = in.readInt();
+            if ( count == NULL )
+                return null;
+            if ( count == 0 )
+                return Collections.emptyList();
+
+            List<String> values = new ArrayList<>( count );
+            for ( int i = 0; i < count; i++ )
+                values.add( readString() );
+
+            return values;
+        }
+
+        Integer readInteger() throws IOException
+        {
+            return in.readBoolean() ? in.readInt() : null;
+        }
+
+        String readString() throws IOException
+        {
+            int index = in.readInt();
+            if ( index == NULL )
+                return null;
+
+            if ( index == NEW )
+            {
+                int length = in.readInt();
+                if ( length > buffer.length )
+                    buffer = new byte[Math.max( length, buffer.length * 2 )];
+                in.readFully( buffer, 0, length );
+
+                String value = new String( buffer, 0, length, UTF_8 );
+                strings.add( value );
+
+                return value;
+            }
+
+            return strings.get( index );
+        }
+    }
+}
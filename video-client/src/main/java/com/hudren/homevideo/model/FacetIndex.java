@@ -0,0 +1,249 @@
+package com.hudren.homevideo.model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Indexes the titles by genre, decade, rating, language and quality for filtering. Every facet
+ * value has a bitset of the ordinals of the titles having that value, so combining filters and
+ * counting the titles of each value only takes word level operations.
+ * <p>
+ * Values of the same facet are combined with OR, different facets with AND. The count of a value
+ * is the number of titles that would match if the value was selected as well.
+ */
+public class FacetIndex
+{
+    public enum Facet
+    {
+        GENRE, DECADE, RATING, LANGUAGE, QUALITY
+    }
+
+    private final List<Title> titles;
+    private final Map<Title, Integer> ordinals;
+    private final BitSet all;
+
+    private final Map<Facet, TreeMap<String, BitSet>> facets = new EnumMap<>( Facet.class );
+
+    /**
+     * Builds the index for the titles.
+     *
+     * @param titles The titles, which must not be modified
+     */
+    public FacetIndex( List<Title> titles )
+    {
+        this.titles = titles;
+
+        ordinals = new IdentityHashMap<>( titles.size() );
+        all = new BitSet( titles.size() );
+        all.set( 0, titles.size() );
+
+        for ( Facet facet : Facet.values() )
+            facets.put( facet, new TreeMap<String, BitSet>() );
+
+        for ( int i = 0; i < titles.size(); i++ )
+        {
+            Title title = titles.get( i );
+            ordinals.put( title, i );
+
+            Info info = title.info;
+            if ( info != null )
+            {
+                addAll( Facet.GENRE, info.genres, i );
+                addAll( Facet.LANGUAGE, info.languages, i );
+
+                if ( info.year > 0 )
+                    add( Facet.DECADE, (info.year / 10 * 10) + "s", i );
+
+                if ( info.rated != null && info.rated.length() > 0 )
+                    add( Facet.RATING, info.rated, i );
+            }
+
+            for ( Video video : title.videos )
+                for ( Container container : video.getContainers() )
+                    if ( container.dimension != null )
+                        add( Facet.QUALITY, container.dimension, i );
+        }
+    }
+
+    private void addAll( Facet facet, List<String> values, int ordinal )
+    {
+        if ( values != null )
+            for ( String value : values )
+                if ( value != null )
+                    add( facet, value, ordinal );
+    }
+
+    private void add( Facet facet, String value, int ordinal )
+    {
+        TreeMap<String, BitSet> values = facets.get( facet );
+
+        BitSet bits = values.get( value );
+        if ( bits == null )
+        {
+            bits = new BitSet( titles.size() );
+            values.put( value, bits );
+        }
+
+        bits.set( ordinal );
+    }
+
+    /**
+     * Returns the titles the index was built for.
+     *
+     * @return The titles, indexed by ordinal
+     */
+    public List<Title> getTitles()
+    {
+        return titles;
+    }
+
+    /**
+     * Returns the ordinal of a title.
+     *
+     * @param title The title
+     * @return The ordinal, or -1 if the title is not indexed
+     */
+    public int ordinalOf( Title title )
+    {
+        Integer ordinal = ordinals.get( title );
+
+        return ordinal != null ? ordinal : -1;
+    }
+
+    /**
+     * Returns the values of a facet.
+     *
+     * @param facet The facet
+     * @return The sorted values
+     */
+    public List<String> getValues( Facet facet )
+    {
+        return new ArrayList<>( facets.get( facet ).keySet() );
+    }
+
+    /**
+     * Returns the titles matching the selection.
+     *
+     * @param selection The selected values of each facet
+     * @return The ordinals of the matching titles
+     */
+    public BitSet filter( Map<Facet, Set<String>> selection )
+    {
+        return filter( selection, null );
+    }
+
+    /**
+     * Returns the number of titles that would match each value of a facet if it was selected in
+     * addition to the selection.
+     *
+     * @param selection The selected values of each facet
+     * @param facet     The facet
+     * @return The counts by value
+     */
+    public Map<String, Integer> getCounts( Map<Facet, Set<String>> selection, Facet facet )
+    {
+        // Values of the same facet do not restrict each other
+        BitSet others = filter( selection, facet );
+        BitSet bits = new BitSet( titles.size() );
+
+        Map<String, Integer> counts = new TreeMap<>();
+        for ( Map.Entry<String, BitSet> entry : facets.get( facet ).entrySet() )
+        {
+            bits.clear();
+            bits.or( entry.getValue() );
+            bits.and( others );
+
+            counts.put( entry.getKey(), bits.cardinality() );
+        }
+
+        return counts;
+    }
+
+    /**
+     * Returns the titles matching the selection of every facet except one.
+     *
+     * @param selection The selected values of each facet
+     * @param excluded  The facet to ignore, or null
+     * @return The ordinals of the matching titles
+     */
+    private BitSet filter( Map<Facet, Set<String>> selection, Facet excluded )
+    {
+        BitSet result = (BitSet) all.clone();
+
+        for ( Map.Entry<Facet, Set<String>> entry : selection.entrySet() )
+        {
+            Set<String> values = entry.getValue();
+            if ( entry.getKey() == excluded || values == null || values.isEmpty() )
+                continue;
+
+            TreeMap<String, BitSet> facet = facets.get( entry.getKey() );
+
+            BitSet any = new BitSet( titles.size() );
+            for ( String value : values )
+            {
+                BitSet bits = facet.get( value );
+                if ( bits != null )
+                    any.or( bits );
+            }
+
+            result.and( any );
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns an empty selection.
+     *
+     * @return The selection, with no values selected for any facet
+     */
+    public static Map<Facet, Set<String>> emptySelection()
+    {
+        return new EnumMap<>( Facet.class );
+    }
+
+    /**
+     * Returns whether any values are selected.
+     *
+     * @param selection The selected values of each facet
+     * @return True, if the selection filters titles
+     */
+    public static boolean isFiltered( Map<Facet, Set<String>> selection )
+    {
+        for ( Set<String> values : selection.values() )
+            if ( values != null && !values.isEmpty() )
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Returns the titles matching the filter.
+     *
+     * @param titles  The titles to filter
+     * @param matches The ordinals of the matching titles
+     * @return The matching titles in the same order
+     */
+    public List<Title> filter( List<Title> titles, BitSet matches )
+    {
+        if ( titles.isEmpty() )
+            return Collections.emptyList();
+
+        List<Title> result = new ArrayList<>();
+        for ( Title title : titles )
+        {
+            int ordinal = ordinalOf( title );
+            if ( ordinal >= 0 && matches.get( ordinal ) )
+                result.add( title );
+        }
+
+        return result;
+    }
+}
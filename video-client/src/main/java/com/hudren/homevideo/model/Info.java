@@ -33,7 +33,7 @@ public class Info implements Serializable
 
     public String getSeasonTitle( Integer season )
     {
-        SeasonInfo seasonInfo = seasons.get( season );
+        SeasonInfo seasonInfo = seasons != null ? seasons.get( season ) : null;
         if ( seasonInfo != null )
             return seasonInfo.title;
 
@@ -42,8 +42,9 @@ public class Info implements Serializable
 
     public String getEpisodeTitle( Integer season, Integer episode )
     {
-        SeasonInfo seasonInfo = seasons.get( season );
-        if ( seasonInfo != null )
+        // Seasons and episodes are null when missing from a snapshot
+        SeasonInfo seasonInfo = seasons != null ? seasons.get( season ) : null;
+        if ( seasonInfo != null && seasonInfo.episodes != null )
         {
             EpisodeInfo episodeInfo = seasonInfo.episodes.get( episode );
             if ( episodeInfo != null )
@@ -0,0 +1,803 @@
+package com.hudren.homevideo.model;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hand-written type adapters for the model classes, avoiding reflection and the field naming
+ * policy when reading the catalog. The json names match the lower case with dashes naming used
+ * by the server.
+ */
+public class ModelAdapters
+{
+    public static final TypeAdapter<Title> TITLE = new TitleAdapter();
+    public static final TypeAdapter<Info> INFO = new InfoAdapter();
+    public static final TypeAdapter<Video> VIDEO = new VideoAdapter();
+    public static final TypeAdapter<Container> CONTAINER = new ContainerAdapter();
+    public static final TypeAdapter<Subtitle> SUBTITLE = new SubtitleAdapter();
+    public static final TypeAdapter<Version> VERSION = new VersionAdapter();
+    public static final TypeAdapter<CatalogDelta> DELTA = new DeltaAdapter();
+
+    private static final Gson gson = new GsonBuilder()
+            .registerTypeAdapter( Title.class, TITLE )
+            .registerTypeAdapter( Info.class, INFO )
+            .registerTypeAdapter( Video.class, VIDEO )
+            .registerTypeAdapter( Container.class, CONTAINER )
+            .registerTypeAdapter( Subtitle.class, SUBTITLE )
+            .registerTypeAdapter( Version.class, VERSION )
+            .registerTypeAdapter( CatalogDelta.class, DELTA )
+            .create();
+
+    private ModelAdapters()
+    {
+    }
+
+    /**
+     * Returns the shared Gson instance for the model classes.
+     *
+     * @return The Gson instance
+     */
+    public static Gson getGson()
+    {
+        return gson;
+    }
+
+    /**
+     * Exercises the adapters once so the first catalog parse does not pay for class loading.
+     */
+    public static void warmUp()
+    {
+        String json = "{\"id\":\"\",\"info\":{\"seasons\":{\"1\":{\"episodes\":{\"1\":{}}}}},"
+                + "\"videos\":[{\"containers\":[{}],\"subtitles\":[{}]}]}";
+
+        try
+        {
+            TITLE.toJson( TITLE.fromJson( json ) );
+        }
+        catch ( IOException e )
+        {
+            // Does not happen with a string
+        }
+    }
+
+    private static boolean skipNull( JsonReader in ) throws IOException
+    {
+        if ( in.peek() == JsonToken.NULL )
+        {
+            in.nextNull();
+            return true;
+        }
+
+        return false;
+    }
+
+    private static String readString( JsonReader in ) throws IOException
+    {
+        return skipNull( in ) ? null : in.nextString();
+    }
+
+    private static Integer readInteger( JsonReader in ) throws IOException
+    {
+        return skipNull( in ) ? null : in.nextInt();
+    }
+
+    private static List<String> readStrings( JsonReader in ) throws IOException
+    {
+        if ( skipNull( in ) )
+            return null;
+
+        List<String> values = new ArrayList<>();
+
+        in.beginArray();
+        while ( in.hasNext() )
+            values.add( readString( in ) );
+        in.endArray();
+
+        return values;
+    }
+
+    private static <T> List<T> readList( JsonReader in, TypeAdapter<T> adapter ) throws IOException
+    {
+        if ( skipNull( in ) )
+            return null;
+
+        List<T> values = new ArrayList<>();
+
+        in.beginArray();
+        while ( in.hasNext() )
+            values.add( adapter.read( in ) );
+        in.endArray();
+
+        return values;
+    }
+
+    private static void writeStrings( JsonWriter out, List<String> values ) throws IOException
+    {
+        if ( values == null )
+        {
+            out.nullValue();
+            return;
+        }
+
+        out.beginArray();
+        for ( String value : values )
+            out.value( value );
+        out.endArray();
+    }
+
+    private static <T> void writeList( JsonWriter out, List<T> values, TypeAdapter<T> adapter ) throws IOException
+    {
+        if ( values == null )
+        {
+            out.nullValue();
+            return;
+        }
+
+        out.beginArray();
+        for ( T value : values )
+            adapter.write( out, value );
+        out.endArray();
+    }
+
+    private static class TitleAdapter extends TypeAdapter<Title>
+    {
+        @Override
+        public Title read( JsonReader in ) throws IOException
+        {
+            if ( skipNull( in ) )
+                return null;
+
+            Title title = new Title();
+
+            in.beginObject();
+            while ( in.hasNext() )
+            {
+                switch ( in.nextName() )
+                {
+                case "id":
+                    title.id = readString( in );
+                    break;
+                case "title":
+                    title.title = readString( in );
+                    break;
+                case "sorting":
+                    title.sorting = readString( in );
+                    break;
+                case "poster":
+                    title.poster = readString( in );
+                    break;
+                case "thumb":
+                    title.thumb = readString( in );
+                    break;
+                case "info":
+                    title.info = INFO.read( in );
+                    break;
+                case "videos":
+                    title.videos = readList( in, VIDEO );
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return title;
+        }
+
+        @Override
+        public void write( JsonWriter out, Title title ) throws IOException
+        {
+            if ( title == null )
+            {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name( "id" ).value( title.id );
+            out.name( "title" ).value( title.title );
+            out.name( "sorting" ).value( title.sorting );
+            out.name( "poster" ).value( title.poster );
+            out.name( "thumb" ).value( title.thumb );
+            out.name( "info" );
+            INFO.write( out, title.info );
+            out.name( "videos" );
+            writeList( out, title.videos, VIDEO );
+            out.endObject();
+        }
+    }
+
+    private static class InfoAdapter extends TypeAdapter<Info>
+    {
+        @Override
+        public Info read( JsonReader in ) throws IOException
+        {
+            if ( skipNull( in ) )
+                return null;
+
+            Info info = new Info();
+
+            in.beginObject();
+            while ( in.hasNext() )
+            {
+                switch ( in.nextName() )
+                {
+                case "title":
+                    info.title = readString( in );
+                    break;
+                case "type":
+                    info.type = readString( in );
+                    break;
+                case "year":
+                    if ( !skipNull( in ) )
+                        info.year = in.nextLong();
+                    break;
+                case "rated":
+                    info.rated = readString( in );
+                    break;
+                case "runtime":
+                    info.runtime = readString( in );
+                    break;
+                case "plot":
+                    info.plot = readString( in );
+                    break;
+                case "imdb-id":
+                    info.imdbId = readString( in );
+                    break;
+                case "netflix-id":
+                    info.netflixId = readString( in );
+                    break;
+                case "categories":
+                    info.categories = readStrings( in );
+                    break;
+                case "subjects":
+                    info.subjects = readStrings( in );
+                    break;
+                case "genres":
+                    info.genres = readStrings( in );
+                    break;
+                case "directors":
+                    info.directors = readStrings( in );
+                    break;
+                case "stars":
+                    info.stars = readStrings( in );
+                    break;
+                case "actors":
+                    info.actors = readStrings( in );
+                    break;
+                case "languages":
+                    info.languages = readStrings( in );
+                    break;
+                case "seasons":
+                    info.seasons = readSeasons( in );
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return info;
+        }
+
+        private Map<Integer, Info.SeasonInfo> readSeasons( JsonReader in ) throws IOException
+        {
+            if ( skipNull( in ) )
+                return null;
+
+            Map<Integer, Info.SeasonInfo> seasons = new HashMap<>();
+
+            in.beginObject();
+            while ( in.hasNext() )
+            {
+                Integer index = Integer.valueOf( in.nextName() );
+                if ( skipNull( in ) )
+                {
+                    seasons.put( index, null );
+                    continue;
+                }
+
+                Info.SeasonInfo season = new Info.SeasonInfo();
+
+                in.beginObject();
+                while ( in.hasNext() )
+                {
+                    switch ( in.nextName() )
+                    {
+                    case "title":
+                        season.title = readString( in );
+                        break;
+                    case "episodes":
+                        season.episodes = readEpisodes( in );
+                        break;
+                    default:
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+
+                seasons.put( index, season );
+            }
+            in.endObject();
+
+            return seasons;
+        }
+
+        private Map<Integer, Info.EpisodeInfo> readEpisodes( JsonReader in ) throws IOException
+        {
+            if ( skipNull( in ) )
+                return null;
+
+            Map<Integer, Info.EpisodeInfo> episodes = new HashMap<>();
+
+            in.beginObject();
+            while ( in.hasNext() )
+            {
+                Integer index = Integer.valueOf( in.nextName() );
+                if ( skipNull( in ) )
+                {
+                    episodes.put( index, null );
+                    continue;
+                }
+
+                Info.EpisodeInfo episode = new Info.EpisodeInfo();
+
+                in.beginObject();
+                while ( in.hasNext() )
+                {
+                    if ( "title".equals( in.nextName() ) )
+                        episode.title = readString( in );
+                    else
+                        in.skipValue();
+                }
+                in.endObject();
+
+                episodes.put( index, episode );
+            }
+            in.endObject();
+
+            return episodes;
+        }
+
+        @Override
+        public void write( JsonWriter out, Info info ) throws IOException
+        {
+            if ( info == null )
+            {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name( "title" ).value( info.title );
+            out.name( "type" ).value( info.type );
+            out.name( "year" ).value( info.year );
+            out.name( "rated" ).value( info.rated );
+            out.name( "runtime" ).value( info.runtime );
+            out.name( "plot" ).value( info.plot );
+            out.name( "imdb-id" ).value( info.imdbId );
+            out.name( "netflix-id" ).value( info.netflixId );
+            out.name( "categories" );
+            writeStrings( out, info.categories );
+            out.name( "subjects" );
+            writeStrings( out, info.subjects );
+            out.name( "genres" );
+            writeStrings( out, info.genres );
+            out.name( "directors" );
+            writeStrings( out, info.directors );
+            out.name( "stars" );
+            writeStrings( out, info.stars );
+            out.name( "actors" );
+            writeStrings( out, info.actors );
+            out.name( "languages" );
+            writeStrings( out, info.languages );
+            out.name( "seasons" );
+            writeSeasons( out, info.seasons );
+            out.endObject();
+        }
+
+        private void writeSeasons( JsonWriter out, Map<Integer, Info.SeasonInfo> seasons ) throws IOException
+        {
+            if ( seasons == null )
+            {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            for ( Map.Entry<Integer, Info.SeasonInfo> entry : seasons.entrySet() )
+            {
+                out.name( String.valueOf( entry.getKey() ) );
+
+                Info.SeasonInfo season = entry.getValue();
+                if ( season == null )
+                {
+                    out.nullValue();
+                    continue;
+                }
+
+                out.beginObject();
+                out.name( "title" ).value( season.title );
+                out.name( "episodes" );
+                if ( season.episodes != null )
+                {
+                    out.beginObject();
+                    for ( Map.Entry<Integer, Info.EpisodeInfo> episode : season.episodes.entrySet() )
+                    {
+                        out.name( String.valueOf( episode.getKey() ) );
+                        if ( episode.getValue() != null )
+                        {
+                            out.beginObject();
+                            out.name( "title" ).value( episode.getValue().title );
+                            out.endObject();
+                        }
+                        else
+                            out.nullValue();
+                    }
+                    out.endObject();
+                }
+                else
+                    out.nullValue();
+                out.endObject();
+            }
+            out.endObject();
+        }
+    }
+
+    private static class VideoAdapter extends TypeAdapter<Video>
+    {
+        @Override
+        public Video read( JsonReader in ) throws IOException
+        {
+            if ( skipNull( in ) )
+                return null;
+
+            Video video = new Video();
+
+            in.beginObject();
+            while ( in.hasNext() )
+            {
+                switch ( in.nextName() )
+                {
+                case "title":
+                    video.title = readString( in );
+                    break;
+                case "duration":
+                    if ( !skipNull( in ) )
+                        video.duration = in.nextDouble();
+                    break;
+                case "season":
+                    video.season = readInteger( in );
+                    break;
+                case "episode":
+                    video.episode = readInteger( in );
+                    break;
+                case "episode-title":
+                    video.episodeTitle = readString( in );
+                    break;
+                case "language":
+                    video.language = readString( in );
+                    break;
+                case "containers":
+                    video.containers = readList( in, CONTAINER );
+                    break;
+                case "subtitles":
+                    video.subtitles = readList( in, SUBTITLE );
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return video;
+        }
+
+        @Override
+        public void write( JsonWriter out, Video video ) throws IOException
+        {
+            if ( video == null )
+            {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name( "title" ).value( video.title );
+            out.name( "duration" ).value( video.duration );
+            out.name( "season" ).value( video.season );
+            out.name( "episode" ).value( video.episode );
+            out.name( "episode-title" ).value( video.episodeTitle );
+            out.name( "language" ).value( video.language );
+            out.name( "containers" );
+            writeList( out, video.containers, CONTAINER );
+            out.name( "subtitles" );
+            writeList( out, video.subtitles, SUBTITLE );
+            out.endObject();
+        }
+    }
+
+    private static class ContainerAdapter extends TypeAdapter<Container>
+    {
+        @Override
+        public Container read( JsonReader in ) throws IOException
+        {
+            if ( skipNull( in ) )
+                return null;
+
+            Container container = new Container();
+
+            in.beginObject();
+            while ( in.hasNext() )
+            {
+                switch ( in.nextName() )
+                {
+                case "filename":
+                    container.filename = readString( in );
+                    break;
+                case "filetype":
+                    container.filetype = readString( in );
+                    break;
+                case "language":
+                    container.language = readString( in );
+                    break;
+                case "size":
+                    if ( !skipNull( in ) )
+                        container.size = in.nextLong();
+                    break;
+                case "bitrate":
+                    if ( !skipNull( in ) )
+                        container.bitrate = in.nextLong();
+                    break;
+                case "width":
+                    if ( !skipNull( in ) )
+                        container.width = in.nextInt();
+                    break;
+                case "height":
+                    if ( !skipNull( in ) )
+                        container.height = in.nextInt();
+                    break;
+                case "dimension":
+                    container.dimension = readString( in );
+                    break;
+                case "video":
+                    container.video = readString( in );
+                    break;
+                case "audio":
+                    container.audio = readString( in );
+                    break;
+                case "modified":
+                    if ( !skipNull( in ) )
+                        container.modified = in.nextLong();
+                    break;
+                case "url":
+                    container.url = readString( in );
+                    break;
+                case "mimetype":
+                    container.mimetype = readString( in );
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return container;
+        }
+
+        @Override
+        public void write( JsonWriter out, Container container ) throws IOException
+        {
+            if ( container == null )
+            {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name( "filename" ).value( container.filename );
+            out.name( "filetype" ).value( container.filetype );
+            out.name( "language" ).value( container.language );
+            out.name( "size" ).value( container.size );
+            out.name( "bitrate" ).value( container.bitrate );
+            out.name( "width" ).value( container.width );
+            out.name( "height" ).value( container.height );
+            out.name( "dimension" ).value( container.dimension );
+            out.name( "video" ).value( container.video );
+            out.name( "audio" ).value( container.audio );
+            out.name( "modified" ).value( container.modified );
+            out.name( "url" ).value( container.url );
+            out.name( "mimetype" ).value( container.mimetype );
+            out.endObject();
+        }
+    }
+
+    private static class SubtitleAdapter extends TypeAdapter<Subtitle>
+    {
+        @Override
+        public Subtitle read( JsonReader in ) throws IOException
+        {
+            if ( skipNull( in ) )
+                return null;
+
+            Subtitle subtitle = new Subtitle();
+
+            in.beginObject();
+            while ( in.hasNext() )
+            {
+                switch ( in.nextName() )
+                {
+                case "title":
+                    subtitle.title = readString( in );
+                    break;
+                case "language":
+                    subtitle.language = readString( in );
+                    break;
+                case "filename":
+                    subtitle.filename = readString( in );
+                    break;
+                case "url":
+                    subtitle.url = readString( in );
+                    break;
+                case "mimetype":
+                    subtitle.mimetype = readString( in );
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return subtitle;
+        }
+
+        @Override
+        public void write( JsonWriter out, Subtitle subtitle ) throws IOException
+        {
+            if ( subtitle == null )
+            {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name( "title" ).value( subtitle.title );
+            out.name( "language" ).value( subtitle.language );
+            out.name( "filename" ).value( subtitle.filename );
+            out.name( "url" ).value( subtitle.url );
+            out.name( "mimetype" ).value( subtitle.mimetype );
+            out.endObject();
+        }
+    }
+
+    private static class VersionAdapter extends TypeAdapter<Version>
+    {
+        @Override
+        public Version read( JsonReader in ) throws IOException
+        {
+            if ( skipNull( in ) )
+                return null;
+
+            Version version = new Version();
+
+            in.beginObject();
+            while ( in.hasNext() )
+            {
+                switch ( in.nextName() )
+                {
+                case "label":
+                    version.label = readString( in );
+                    break;
+                case "package-name":
+                    version.packageName = readString( in );
+                    break;
+                case "version-code":
+                    if ( !skipNull( in ) )
+                        version.versionCode = in.nextInt();
+                    break;
+                case "version-name":
+                    version.versionName = readString( in );
+                    break;
+                case "min-sdk-version":
+                    if ( !skipNull( in ) )
+                        version.minSdkVersion = in.nextInt();
+                    break;
+                case "filename":
+                    version.filename = readString( in );
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return version;
+        }
+
+        @Override
+        public void write( JsonWriter out, Version version ) throws IOException
+        {
+            if ( version == null )
+            {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name( "label" ).value( version.label );
+            out.name( "package-name" ).value( version.packageName );
+            out.name( "version-code" ).value( version.versionCode );
+            out.name( "version-name" ).value( version.versionName );
+            out.name( "min-sdk-version" ).value( version.minSdkVersion );
+            out.name( "filename" ).value( version.filename );
+            out.endObject();
+        }
+    }
+
+    private static class DeltaAdapter extends TypeAdapter<CatalogDelta>
+    {
+        @Override
+        public CatalogDelta read( JsonReader in ) throws IOException
+        {
+            if ( skipNull( in ) )
+                return null;
+
+            CatalogDelta delta = new CatalogDelta();
+
+            in.beginObject();
+            while ( in.hasNext() )
+            {
+                switch ( in.nextName() )
+                {
+                case "version":
+                    delta.version = readString( in );
+                    break;
+                case "added":
+                    delta.added = readList( in, TITLE );
+                    break;
+                case "changed":
+                    delta.changed = readList( in, TITLE );
+                    break;
+                case "removed":
+                    delta.removed = readStrings( in );
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return delta;
+        }
+
+        @Override
+        public void write( JsonWriter out, CatalogDelta delta ) throws IOException
+        {
+            if ( delta == null )
+            {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name( "version" ).value( delta.version );
+            out.name( "added" );
+            writeList( out, delta.added, TITLE );
+            out.name( "changed" );
+            writeList( out, delta.changed, TITLE );
+            out.name( "removed" );
+            writeStrings( out, delta.removed );
+            out.endObject();
+        }
+    }
+}
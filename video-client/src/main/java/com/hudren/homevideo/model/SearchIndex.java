@@ -0,0 +1,434 @@
+package com.hudren.homevideo.model;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index for searching the titles by name, people and genre. Every word of a
+ * query matches the titles containing a term that starts with the word, and the results are ordered
+ * with the most recent titles first.
+ * <p>
+ * The index is updated incrementally, only titles that were added, replaced or removed since the
+ * previous catalog are indexed again. Each update publishes an immutable copy of the index, which
+ * searches read without locking, so a search is never blocked by an update in progress. The copy
+ * shares the postings of every term the update did not add to, so only the postings of the added
+ * titles' terms are copied.
+ */
+public class SearchIndex
+{
+    private static final Pattern MARKS = Pattern.compile( "\\p{M}+" );
+    private static final Pattern SEPARATORS = Pattern.compile( "[^\\p{L}\\p{N}]+" );
+
+    /**
+     * Postings of removed titles are discarded once this fraction of the documents is removed.
+     */
+    private static final float MAX_REMOVED = 0.5f;
+
+    /**
+     * The titles by document number, null once a title has been removed, and when each was
+     * modified.
+     */
+    private final List<Title> documents = new ArrayList<>();
+    private final Map<String, Integer> documentIds = new HashMap<>();
+    private long[] modified = new long[16];
+    private int removed;
+
+    /**
+     * The index published by the last update, read by the searches and copied by the next update.
+     */
+    private volatile Snapshot snapshot = new Snapshot( new Title[0], new String[0], new int[0][], new int[0] );
+
+    /**
+     * Updates the index to contain the titles of the catalog.
+     *
+     * @param titles The catalog
+     */
+    public synchronized void update( List<Title> titles )
+    {
+        Map<String, Title> catalog = new HashMap<>( titles.size() * 2 );
+        for ( Title title : titles )
+            if ( title.id != null )
+                catalog.put( title.id, title );
+
+        // Remove titles that were removed or replaced
+        for ( Map.Entry<String, Integer> entry : new ArrayList<>( documentIds.entrySet() ) )
+        {
+            int doc = entry.getValue();
+            if ( catalog.get( entry.getKey() ) != documents.get( doc ) )
+            {
+                documents.set( doc, null );
+                documentIds.remove( entry.getKey() );
+                removed++;
+            }
+        }
+
+        Snapshot previous = snapshot;
+        TreeMap<String, Postings> added = new TreeMap<>();
+        int first = documents.size();
+
+        if ( removed > documents.size() * MAX_REMOVED )
+        {
+            previous = clear( added );
+            first = 0;
+        }
+
+        // Index new titles
+        for ( Title title : catalog.values() )
+            if ( !documentIds.containsKey( title.id ) )
+                add( title, added );
+
+        snapshot = merge( previous, added, first );
+    }
+
+    /**
+     * Returns the titles matching every word of the query.
+     *
+     * @param query The text entered by the user
+     * @return The matching titles, most recent first
+     */
+    public List<Title> search( String query )
+    {
+        List<String> words = tokenize( query );
+        if ( words.isEmpty() )
+            return Collections.emptyList();
+
+        Snapshot index = snapshot;
+
+        BitSet matches = null;
+        for ( String word : words )
+        {
+            BitSet docs = new BitSet( index.documents.length );
+
+            // Terms starting with the word follow the word in sorted order
+            int term = Arrays.binarySearch( index.terms, word );
+            if ( term < 0 )
+                term = -term - 1;
+
+            for ( ; term < index.terms.length && index.terms[term].startsWith( word ); term++ )
+                for ( int doc : index.postings[term] )
+                    docs.set( doc );
+
+            if ( matches == null )
+                matches = docs;
+            else
+                matches.and( docs );
+
+            if ( matches.isEmpty() )
+                return Collections.emptyList();
+        }
+
+        List<Title> results = new ArrayList<>( matches.cardinality() );
+        for ( int doc : index.recency )
+            if ( matches.get( doc ) )
+                results.add( index.documents[doc] );
+
+        return results;
+    }
+
+    /**
+     * Returns the number of titles in the index.
+     *
+     * @return The title count
+     */
+    public int size()
+    {
+        return snapshot.recency.length;
+    }
+
+    /**
+     * Copies the index with the postings of the new titles. The terms without new titles keep their
+     * postings, which are never modified once published.
+     *
+     * @param previous The index the new titles are added to
+     * @param added    The postings of the terms of the new titles
+     * @param first    The first document number of the new titles
+     * @return The updated index
+     */
+    private Snapshot merge( Snapshot previous, TreeMap<String, Postings> added, int first )
+    {
+        String[] terms = previous.terms;
+        int[][] postings = previous.postings;
+        int[] recency = sortByRecency( previous.recency, first );
+
+        if ( added.isEmpty() )
+            return new Snapshot( documents.toArray( new Title[documents.size()] ), terms, postings, recency );
+
+        // Find where the added terms go in the previous terms
+        int[] found = new int[added.size()];
+        int count = terms.length;
+        int i = 0;
+        for ( String term : added.keySet() )
+        {
+            found[i] = Arrays.binarySearch( terms, term );
+            if ( found[i++] < 0 )
+                count++;
+        }
+
+        String[] mergedTerms = new String[count];
+        int[][] mergedPostings = new int[count][];
+        int from = 0;
+        int to = 0;
+        i = 0;
+        for ( Map.Entry<String, Postings> entry : added.entrySet() )
+        {
+            int index = found[i++];
+            int end = index >= 0 ? index : -index - 1;
+
+            System.arraycopy( terms, from, mergedTerms, to, end - from );
+            System.arraycopy( postings, from, mergedPostings, to, end - from );
+            to += end - from;
+
+            mergedTerms[to] = entry.getKey();
+            mergedPostings[to++] = entry.getValue().appendTo( index >= 0 ? postings[index] : null );
+            from = index >= 0 ? end + 1 : end;
+        }
+
+        System.arraycopy( terms, from, mergedTerms, to, terms.length - from );
+        System.arraycopy( postings, from, mergedPostings, to, terms.length - from );
+
+        return new Snapshot( documents.toArray( new Title[documents.size()] ), mergedTerms, mergedPostings, recency );
+    }
+
+    /**
+     * Discards the removed titles by indexing the remaining titles again.
+     *
+     * @param added The postings of the terms of the titles indexed again
+     * @return The empty index the postings are added to
+     */
+    private Snapshot clear( TreeMap<String, Postings> added )
+    {
+        List<Title> titles = new ArrayList<>( documentIds.size() );
+        for ( Title title : documents )
+            if ( title != null )
+                titles.add( title );
+
+        documents.clear();
+        documentIds.clear();
+        removed = 0;
+
+        for ( Title title : titles )
+            add( title, added );
+
+        return new Snapshot( new Title[0], new String[0], new int[0][], new int[0] );
+    }
+
+    private void add( Title title, TreeMap<String, Postings> added )
+    {
+        int doc = documents.size();
+        documents.add( title );
+        documentIds.put( title.id, doc );
+
+        if ( doc == modified.length )
+            modified = Arrays.copyOf( modified, doc * 2 );
+        modified[doc] = title.getModified();
+
+        Set<String> words = new LinkedHashSet<>( tokenize( title.getTitle() ) );
+
+        Info info = title.info;
+        if ( info != null )
+        {
+            addAll( words, info.actors );
+            addAll( words, info.stars );
+            addAll( words, info.directors );
+            addAll( words, info.genres );
+            addAll( words, info.subjects );
+        }
+
+        for ( String word : words )
+        {
+            Postings postings = added.get( word );
+            if ( postings == null )
+            {
+                postings = new Postings();
+                added.put( word, postings );
+            }
+
+            postings.add( doc );
+        }
+    }
+
+    private static void addAll( Set<String> words, List<String> values )
+    {
+        if ( values != null )
+            for ( String value : values )
+                words.addAll( tokenize( value ) );
+    }
+
+    /**
+     * Returns the live documents, most recently modified first, merging the new documents into the
+     * previous order.
+     *
+     * @param previous The previous order
+     * @param first    The first new document number
+     * @return The document numbers
+     */
+    private int[] sortByRecency( int[] previous, int first )
+    {
+        Integer[] docs = new Integer[documents.size() - first];
+        for ( int i = 0; i < docs.length; i++ )
+            docs[i] = first + i;
+
+        Arrays.sort( docs, new Comparator<Integer>()
+        {
+            @Override
+            public int compare( Integer lhs, Integer rhs )
+            {
+                long one = modified[lhs];
+                long two = modified[rhs];
+
+                return one > two ? -1 : (one == two ? lhs.compareTo( rhs ) : 1);
+            }
+
+        } );
+
+        int[] recency = new int[documentIds.size()];
+        int i = 0;
+        int j = 0;
+        for ( int doc : previous )
+        {
+            // Skip removed titles
+            if ( documents.get( doc ) == null )
+                continue;
+
+            while ( j < docs.length && isNewer( docs[j], doc ) )
+                recency[i++] = docs[j++];
+
+            recency[i++] = doc;
+        }
+
+        while ( j < docs.length )
+            recency[i++] = docs[j++];
+
+        return recency;
+    }
+
+    /**
+     * Returns whether a document comes first in the order of recency.
+     *
+     * @param doc   The document number
+     * @param other The other document number
+     * @return True, if modified more recently, or added earlier when modified at the same time
+     */
+    private boolean isNewer( int doc, int other )
+    {
+        return modified[doc] > modified[other] || (modified[doc] == modified[other] && doc < other);
+    }
+
+    /**
+     * Splits the text into lower case words without accents.
+     *
+     * @param text The text
+     * @return The words
+     */
+    static List<String> tokenize( String text )
+    {
+        if ( text == null || text.isEmpty() )
+            return Collections.emptyList();
+
+        List<String> words = new ArrayList<>();
+        for ( String word : SEPARATORS.split( normalize( text ) ) )
+            if ( !word.isEmpty() )
+                words.add( word );
+
+        return words;
+    }
+
+    /**
+     * Converts the text to lower case and removes accents.
+     *
+     * @param text The text
+     * @return The normalized text
+     */
+    static String normalize( String text )
+    {
+        // Only non-ASCII text can have accents
+        for ( int i = 0; i < text.length(); i++ )
+        {
+            if ( text.charAt( i ) > 0x7f )
+            {
+                text = MARKS.matcher( Normalizer.normalize( text, Normalizer.Form.NFD ) ).replaceAll( "" );
+                break;
+            }
+        }
+
+        return text.toLowerCase( Locale.ROOT );
+    }
+
+    /**
+     * Normalizes the text and replaces runs of anything other than letters and digits with a single
+     * space.
+     *
+     * @param text The text
+     * @return The simplified text
+     */
+    static String simplify( String text )
+    {
+        return SEPARATORS.matcher( normalize( text ) ).replaceAll( " " ).trim();
+    }
+
+    /**
+     * The document numbers containing a term, in the order they were added.
+     */
+    private static class Postings
+    {
+        private int[] docs = new int[2];
+        private int size;
+
+        void add( int doc )
+        {
+            if ( size == docs.length )
+                docs = Arrays.copyOf( docs, size * 2 );
+
+            docs[size++] = doc;
+        }
+
+        /**
+         * Returns the document numbers following those of the published postings.
+         *
+         * @param published The published postings of the term, or null
+         * @return The new postings
+         */
+        int[] appendTo( int[] published )
+        {
+            if ( published == null )
+                return Arrays.copyOf( docs, size );
+
+            int[] result = Arrays.copyOf( published, published.length + size );
+            System.arraycopy( docs, 0, result, published.length, size );
+
+            return result;
+        }
+    }
+
+    /**
+     * An immutable copy of the index, with the postings of each term in the same position as the
+     * term in the sorted terms.
+     */
+    private static class Snapshot
+    {
+        final Title[] documents;
+        final String[] terms;
+        final int[][] postings;
+        final int[] recency;
+
+        Snapshot( Title[] documents, String[] terms, int[][] postings, int[] recency )
+        {
+            this.documents = documents;
+            this.terms = terms;
+            this.postings = postings;
+            this.recency = recency;
+        }
+    }
+}
@@ -1,17 +1,18 @@
 package com.hudren.homevideo.model;
 
 import java.io.Serializable;
+import java.text.CollationKey;
+import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.TreeSet;
 
 /**
  * Represents a title that can be either a single video, a multipart movie, or a number of seasons
  * of TV shows.
  */
-public class Title implements Serializable
+public class Title implements Serializable, Cloneable
 {
     public String id;
     public String title;
@@ -24,6 +25,12 @@ public class Title implements Serializable
 
     public List<Video> videos = Collections.emptyList();
 
+    private transient boolean ranked;
+    private transient TitleIndex index;
+    private transient CollationKey collationKey;
+
+    private static final Collator collator = Collator.getInstance();
+
     public String getTitle()
     {
         return info != null && info.title != null ? info.title : title;
@@ -34,6 +41,28 @@ public class Title implements Serializable
         return sorting != null ? sorting : title;
     }
 
+    /**
+     * Returns the key for sorting by title according to the rules of the default locale. It is
+     * created on first use, which should happen when the title is ingested.
+     *
+     * @return The collation key of the sorting title
+     */
+    public CollationKey getCollationKey()
+    {
+        if ( collationKey == null )
+        {
+            String sorting = getSortingTitle();
+
+            // Collator instances are not thread safe
+            synchronized ( collator )
+            {
+                collationKey = collator.getCollationKey( sorting != null ? sorting : "" );
+            }
+        }
+
+        return collationKey;
+    }
+
     private static Comparator<Integer> nullSafeComparator = new Comparator<Integer>()
     {
         @Override
@@ -52,6 +81,8 @@ public class Title implements Serializable
 
     public void rankVideos()
     {
+        ranked = true;
+
         Collections.sort( videos, new Comparator<Video>()
         {
             @Override
@@ -66,35 +97,83 @@ public class Title implements Serializable
             }
 
         } );
+
+        index = new TitleIndex( this );
     }
 
-    public List<Video> getVideos()
+    /**
+     * Returns the season and episode index, building it if the title was not ranked.
+     *
+     * @return The index
+     */
+    private TitleIndex getIndex()
     {
-        return videos;
+        if ( index == null )
+            index = new TitleIndex( this );
+
+        return index;
     }
 
-    public Video getVideo()
+    /**
+     * Returns whether the videos have been ranked since this title was loaded.
+     *
+     * @return True, if ranked
+     */
+    public boolean isRanked()
     {
-        return videos.size() == 1 ? videos.get( 0 ) : null;
+        return ranked;
     }
 
-    private boolean integerEquals( Integer one, Integer two )
+    /**
+     * Marks the videos as already ranked, used when restoring a ranked catalog.
+     */
+    void setRanked()
     {
-        if ( one == two )
-            return true;
-        if ( one != null )
-            return one.equals( two );
-
-        return false;
+        ranked = true;
+        index = new TitleIndex( this );
     }
 
-    public Video getVideo( Episode episode )
+    /**
+     * Returns a copy of this title with copies of the videos, so the download status can be
+     * changed without affecting a title that is displayed. The copy keeps the ranking.
+     *
+     * @return The copy
+     */
+    public Title copy()
     {
+        Title copy;
+        try
+        {
+            copy = (Title) clone();
+        }
+        catch ( CloneNotSupportedException e )
+        {
+            throw new AssertionError( e );
+        }
+
+        copy.videos = new ArrayList<>( videos.size() );
         for ( Video video : videos )
-            if ( integerEquals( video.season, episode.season ) && integerEquals( video.episode, episode.index ) )
-                return video;
+            copy.videos.add( video.copy() );
+
+        // The index refers to the videos
+        copy.index = ranked ? new TitleIndex( copy ) : null;
 
-        return null;
+        return copy;
+    }
+
+    public List<Video> getVideos()
+    {
+        return videos;
+    }
+
+    public Video getVideo()
+    {
+        return videos.size() == 1 ? videos.get( 0 ) : null;
+    }
+
+    public Video getVideo( Episode episode )
+    {
+        return getIndex().getVideo( episode.season, episode.index );
     }
 
     public Video getFirstVideo()
@@ -124,11 +203,7 @@ public class Title implements Serializable
      */
     public boolean hasSeasons()
     {
-        for ( Video video : videos )
-            if ( video.season != null )
-                return true;
-
-        return false;
+        return getIndex().hasSeasons;
     }
 
     /**
@@ -144,87 +219,32 @@ public class Title implements Serializable
     /**
      * Returns the season belonging to this title.
      *
-     * @return The seasons
+     * @return The unmodifiable list of seasons
      */
     public List<Season> getSeasons()
     {
-        ArrayList<Season> seasons = new ArrayList<>();
-
-        // Collect season indexes from videos
-        TreeSet<Integer> indexes = new TreeSet<>();
-        for ( Video video : videos )
-            if ( video.season != null )
-                indexes.add( video.season );
-
-        for ( Integer index : indexes )
-        {
-            Season season = new Season();
-            season.index = index;
-            season.title = info.getSeasonTitle( index );
-
-            seasons.add( season );
-        }
-
-        return seasons;
+        return getIndex().seasons;
     }
 
     /**
      * Returns the episodes belonging to a season.
      *
      * @param season The season
-     * @return The season's episodes
+     * @return The season's episodes, unmodifiable
      */
     public List<Episode> getEpisodes( Integer season )
     {
-        ArrayList<Episode> episodes = new ArrayList<>();
-
-        // Collect episode indexes from videos
-        TreeSet<Integer> indexes = new TreeSet<>();
-        for ( Video video : videos )
-            if ( video.season != null && video.season.equals( season ) && video.episode != null )
-                indexes.add( video.episode );
-
-        for ( Integer index : indexes )
-        {
-            Episode episode = new Episode();
-            episode.season = season;
-            episode.index = index;
-            episode.title = info.getEpisodeTitle( season, index );
-
-            if ( episode.title == null )
-                episode.title = getVideo( episode ).episodeTitle;
-
-            episodes.add( episode );
-        }
-
-        return episodes;
+        return getIndex().getEpisodes( season );
     }
 
     /**
      * Returns the parts belonging to a movie.
      *
-     * @return The movie parts
+     * @return The unmodifiable list of movie parts
      */
     public List<Episode> getParts()
     {
-        ArrayList<Episode> episodes = new ArrayList<>();
-
-        // Collect episode indexes from videos
-        TreeSet<Integer> indexes = new TreeSet<>();
-        for ( Video video : videos )
-            if ( video.season == null && video.episode != null )
-                indexes.add( video.episode );
-
-        for ( Integer index : indexes )
-        {
-            Episode episode = new Episode();
-            episode.index = index;
-            episode.title = info.getEpisodeTitle( null, index );
-
-            episodes.add( episode );
-        }
-
-        return episodes;
+        return getIndex().parts;
     }
 
     /**
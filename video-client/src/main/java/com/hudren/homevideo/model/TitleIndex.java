@@ -0,0 +1,123 @@
+package com.hudren.homevideo.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Indexes the seasons, episodes and parts of a title so they can be looked up without scanning
+ * the videos. Built once per title after its videos have been ranked.
+ */
+class TitleIndex
+{
+    final boolean hasSeasons;
+    final List<Season> seasons;
+    final List<Episode> parts;
+
+    private final Map<Integer, List<Episode>> episodes;
+    private final Map<Long, Video> videos;
+
+    TitleIndex( Title title )
+    {
+        Info info = title.info;
+
+        videos = new HashMap<>();
+        for ( Video video : title.videos )
+        {
+            // Keep the first video for an episode
+            long key = key( video.season, video.episode );
+            if ( !videos.containsKey( key ) )
+                videos.put( key, video );
+        }
+
+        // Collect season and episode indexes from videos
+        TreeMap<Integer, TreeSet<Integer>> seasonEpisodes = new TreeMap<>();
+        TreeSet<Integer> partIndexes = new TreeSet<>();
+        for ( Video video : title.videos )
+        {
+            if ( video.season != null )
+            {
+                TreeSet<Integer> indexes = seasonEpisodes.get( video.season );
+                if ( indexes == null )
+                {
+                    indexes = new TreeSet<>();
+                    seasonEpisodes.put( video.season, indexes );
+                }
+
+                if ( video.episode != null )
+                    indexes.add( video.episode );
+            }
+            else if ( video.episode != null )
+                partIndexes.add( video.episode );
+        }
+
+        hasSeasons = !seasonEpisodes.isEmpty();
+
+        List<Season> seasons = new ArrayList<>( seasonEpisodes.size() );
+        episodes = new HashMap<>();
+        for ( Map.Entry<Integer, TreeSet<Integer>> entry : seasonEpisodes.entrySet() )
+        {
+            Integer index = entry.getKey();
+
+            Season season = new Season();
+            season.index = index;
+            season.title = info != null ? info.getSeasonTitle( index ) : null;
+            seasons.add( season );
+
+            List<Episode> list = new ArrayList<>( entry.getValue().size() );
+            for ( Integer number : entry.getValue() )
+            {
+                Episode episode = new Episode();
+                episode.season = index;
+                episode.index = number;
+                episode.title = info != null ? info.getEpisodeTitle( index, number ) : null;
+
+                if ( episode.title == null )
+                    episode.title = videos.get( key( index, number ) ).episodeTitle;
+
+                list.add( episode );
+            }
+
+            episodes.put( index, Collections.unmodifiableList( list ) );
+        }
+        this.seasons = Collections.unmodifiableList( seasons );
+
+        List<Episode> parts = new ArrayList<>( partIndexes.size() );
+        for ( Integer number : partIndexes )
+        {
+            Episode episode = new Episode();
+            episode.index = number;
+            episode.title = info != null ? info.getEpisodeTitle( null, number ) : null;
+
+            parts.add( episode );
+        }
+        this.parts = Collections.unmodifiableList( parts );
+    }
+
+    /**
+     * Returns the key identifying a season and episode, either of which may be null.
+     */
+    private static long key( Integer season, Integer episode )
+    {
+        long high = season != null ? season : Integer.MIN_VALUE;
+        long low = episode != null ? episode : Integer.MIN_VALUE;
+
+        return (high << 32) | (low & 0xffffffffL);
+    }
+
+    List<Episode> getEpisodes( Integer season )
+    {
+        List<Episode> list = episodes.get( season );
+
+        return list != null ? list : Collections.<Episode>emptyList();
+    }
+
+    Video getVideo( Integer season, Integer episode )
+    {
+        return videos.get( key( season, episode ) );
+    }
+}
@@ -0,0 +1,506 @@
+package com.hudren.homevideo.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Typo tolerant search over the titles, sorting titles and episode titles. Each text is split into
+ * trigrams, and only texts long enough and sharing enough trigrams with the query, at offsets
+ * consistent with the allowed number of errors, are compared with the query. A text matches when
+ * some part of it is within the allowed edit distance of the query.
+ * <p>
+ * The index is immutable and stored in a compact form that can be written to and read from a file,
+ * so it does not need to be built again when the catalog has not changed.
+ */
+public class TrigramIndex
+{
+    private static final int MAGIC = 0x48565449;
+
+    /**
+     * The version of the file format, files written in other versions are not read.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The maximum number of titles returned by a search.
+     */
+    private static final int MAX_RESULTS = 50;
+
+    private final Title[] titles;
+
+    /**
+     * The title of every text and the simplified text.
+     */
+    private final int[] entryTitles;
+    private final String[] entries;
+
+    /**
+     * The length of the longest text.
+     */
+    private final int longest;
+
+    /**
+     * The sorted trigrams, and for each the range of its entries in the postings.
+     */
+    private final long[] trigrams;
+    private final int[] offsets;
+    private final int[] postings;
+
+    private TrigramIndex( Title[] titles, int[] entryTitles, String[] entries, long[] trigrams, int[] offsets, int[] postings )
+    {
+        this.titles = titles;
+        this.entryTitles = entryTitles;
+        this.entries = entries;
+        this.trigrams = trigrams;
+        this.offsets = offsets;
+        this.postings = postings;
+
+        int longest = 0;
+        for ( String entry : entries )
+            longest = Math.max( longest, entry.length() );
+        this.longest = longest;
+    }
+
+    /**
+     * Builds the index for the titles.
+     *
+     * @param catalog The titles
+     * @return The index
+     */
+    public static TrigramIndex build( List<Title> catalog )
+    {
+        Title[] titles = catalog.toArray( new Title[catalog.size()] );
+
+        List<String> entries = new ArrayList<>();
+        List<Integer> entryTitles = new ArrayList<>();
+        for ( int i = 0; i < titles.length; i++ )
+        {
+            Title title = titles[i];
+
+            Set<String> texts = new LinkedHashSet<>();
+            addText( texts, title.getTitle() );
+            addText( texts, title.getSortingTitle() );
+            for ( Video video : title.videos )
+                addText( texts, video.episodeTitle );
+
+            for ( String text : texts )
+            {
+                entries.add( text );
+                entryTitles.add( i );
+            }
+        }
+
+        // Collect the distinct trigrams of every entry
+        Map<Long, Entries> lists = new HashMap<>();
+        int total = 0;
+        for ( int entry = 0; entry < entries.size(); entry++ )
+        {
+            for ( long trigram : trigramsOf( entries.get( entry ) ) )
+            {
+                Entries list = lists.get( trigram );
+                if ( list == null )
+                {
+                    list = new Entries();
+                    lists.put( trigram, list );
+                }
+
+                list.add( entry );
+                total++;
+            }
+        }
+
+        long[] trigrams = new long[lists.size()];
+        int i = 0;
+        for ( Long trigram : lists.keySet() )
+            trigrams[i++] = trigram;
+        Arrays.sort( trigrams );
+
+        int[] offsets = new int[trigrams.length + 1];
+        int[] postings = new int[total];
+        for ( i = 0; i < trigrams.length; i++ )
+        {
+            Entries list = lists.get( trigrams[i] );
+            System.arraycopy( list.values, 0, postings, offsets[i], list.size );
+            offsets[i + 1] = offsets[i] + list.size;
+        }
+
+        int[] owners = new int[entryTitles.size()];
+        for ( i = 0; i < owners.length; i++ )
+            owners[i] = entryTitles.get( i );
+
+        return new TrigramIndex( titles, owners, entries.toArray( new String[entries.size()] ), trigrams, offsets, postings );
+    }
+
+    private static void addText( Set<String> texts, String text )
+    {
+        if ( text != null )
+        {
+            String simplified = SearchIndex.simplify( text );
+            if ( !simplified.isEmpty() )
+                texts.add( simplified );
+        }
+    }
+
+    /**
+     * Returns the distinct trigrams of the text.
+     *
+     * @param text The simplified text
+     * @return The trigrams, each packed into a long
+     */
+    private static long[] trigramsOf( String text )
+    {
+        long[] result = trigramsAt( text );
+        Arrays.sort( result );
+
+        // Remove duplicates
+        int size = 0;
+        for ( int i = 0; i < result.length; i++ )
+            if ( size == 0 || result[size - 1] != result[i] )
+                result[size++] = result[i];
+
+        return Arrays.copyOf( result, size );
+    }
+
+    /**
+     * Returns the trigram starting at each position of the text.
+     *
+     * @param text The simplified text
+     * @return The trigrams, each packed into a long
+     */
+    private static long[] trigramsAt( String text )
+    {
+        long[] result = new long[Math.max( 0, text.length() - 2 )];
+
+        for ( int i = 0; i < result.length; i++ )
+            result[i] = trigramAt( text, i );
+
+        return result;
+    }
+
+    private static long trigramAt( String text, int i )
+    {
+        return ((long) text.charAt( i ) << 32) | ((long) text.charAt( i + 1 ) << 16) | text.charAt( i + 2 );
+    }
+
+    /**
+     * Returns the number of errors allowed for a query.
+     *
+     * @param length The length of the simplified query
+     * @return The maximum edit distance
+     */
+    private static int maxErrors( int length )
+    {
+        return length <= 4 ? 0 : (length <= 8 ? 1 : 2);
+    }
+
+    /**
+     * Returns the titles with a text approximately containing the query.
+     *
+     * @param query The text entered by the user
+     * @return The matching titles, closest and then most recent first
+     */
+    public List<Title> search( String query )
+    {
+        String text = query != null ? SearchIndex.simplify( query ) : "";
+        long[] grams = trigramsOf( text );
+        if ( grams.length == 0 )
+            return Collections.emptyList();
+
+        int errors = maxErrors( text.length() );
+
+        // Each error changes at most three of the trigrams at the positions of the query, and a
+        // transposition four, so a matching text contains the trigrams of the other positions
+        long[] positions = trigramsAt( text );
+        int required = Math.max( 1, positions.length - 4 * errors );
+
+        // The positions of each distinct trigram of the query
+        int[][] gramPositions = new int[grams.length][];
+        for ( int i = 0; i < grams.length; i++ )
+        {
+            int count = 0;
+            for ( long gram : positions )
+                if ( gram == grams[i] )
+                    count++;
+
+            gramPositions[i] = new int[count];
+            for ( int position = 0, j = 0; position < positions.length; position++ )
+                if ( positions[position] == grams[i] )
+                    gramPositions[i][j++] = position;
+        }
+
+        // Count the positions of the query with a trigram in each text
+        int[] counts = new int[entries.length];
+        for ( int gram = 0; gram < grams.length; gram++ )
+        {
+            int index = Arrays.binarySearch( trigrams, grams[gram] );
+            if ( index >= 0 )
+                for ( int i = offsets[index]; i < offsets[index + 1]; i++ )
+                    counts[postings[i]] += gramPositions[gram].length;
+        }
+
+        // Errors only shorten the query by their number, the text may be longer than the match
+        int minLength = text.length() - errors;
+
+        // The offsets are only checked when more than one trigram is required, and tracked with a
+        // bit for each position of the query
+        boolean aligning = required > 1 && positions.length <= Long.SIZE;
+        long[] diagonals = aligning ? new long[longest + positions.length] : null;
+
+        // Verify the candidates, keeping the closest text of each title
+        final int[] distances = new int[titles.length];
+        Arrays.fill( distances, Integer.MAX_VALUE );
+
+        List<Integer> matches = new ArrayList<>();
+        for ( int entry = 0; entry < counts.length; entry++ )
+        {
+            if ( counts[entry] < required || entries[entry].length() < minLength )
+                continue;
+
+            if ( aligning && !isAligned( grams, gramPositions, entries[entry], errors, required, diagonals ) )
+                continue;
+
+            int distance = distance( text, entries[entry], errors );
+            if ( distance <= errors )
+            {
+                int title = entryTitles[entry];
+                if ( distances[title] == Integer.MAX_VALUE )
+                    matches.add( title );
+
+                distances[title] = Math.min( distances[title], distance );
+            }
+        }
+
+        Collections.sort( matches, new Comparator<Integer>()
+        {
+            @Override
+            public int compare( Integer lhs, Integer rhs )
+            {
+                int comp = distances[lhs] - distances[rhs];
+
+                if ( comp == 0 )
+                    comp = Long.valueOf( titles[rhs].getModified() ).compareTo( titles[lhs].getModified() );
+
+                return comp;
+            }
+
+        } );
+
+        List<Title> results = new ArrayList<>( Math.min( matches.size(), MAX_RESULTS ) );
+        for ( int i = 0; i < matches.size() && i < MAX_RESULTS; i++ )
+            results.add( titles[matches.get( i )] );
+
+        return results;
+    }
+
+    /**
+     * Returns whether the text contains enough trigrams of the query at consistent offsets to
+     * contain a match. In a match, every unchanged trigram of the query is found in the text at its
+     * position in the query plus the start of the match, shifted by the characters inserted less
+     * those deleted before it, so these shifts span at most the number of errors.
+     *
+     * @param grams     The sorted distinct trigrams of the query
+     * @param positions The positions of each trigram in the query, at most 64
+     * @param text      The text
+     * @param errors    The maximum edit distance
+     * @param required  The minimum number of unchanged trigrams
+     * @param diagonals Cleared buffer for the positions found at each offset, left cleared
+     * @return True, if the text may contain a match
+     */
+    private static boolean isAligned( long[] grams, int[][] positions, String text, int errors, int required, long[] diagonals )
+    {
+        int length = 0;
+        for ( int[] gramPositions : positions )
+            length += gramPositions.length;
+
+        // Mark the positions of the query found at each offset in the text, made positive
+        int count = Math.max( 0, text.length() - 2 );
+        for ( int j = 0; j < count; j++ )
+        {
+            int gram = Arrays.binarySearch( grams, trigramAt( text, j ) );
+            if ( gram >= 0 )
+                for ( int i : positions[gram] )
+                    diagonals[j - i + length - 1] |= 1L << i;
+        }
+
+        // Look for enough distinct positions within a range of offsets
+        int size = count + length - 1;
+        boolean aligned = false;
+        for ( int first = 0; first < size && !aligned; first++ )
+        {
+            long found = 0;
+            for ( int d = first; d <= first + errors && d < size; d++ )
+                found |= diagonals[d];
+
+            aligned = Long.bitCount( found ) >= required;
+        }
+
+        Arrays.fill( diagonals, 0, size, 0 );
+
+        return aligned;
+    }
+
+    /**
+     * Returns the smallest edit distance between the query and any part of the text, counting a
+     * transposition of adjacent characters as a single edit.
+     *
+     * @param query The query
+     * @param text  The text
+     * @param limit The largest distance of interest
+     * @return The distance, or a value greater than the limit
+     */
+    private static int distance( String query, String text, int limit )
+    {
+        int m = query.length();
+        int[] before = new int[m + 1];
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+
+        for ( int i = 0; i <= m; i++ )
+            previous[i] = i;
+
+        int best = previous[m];
+        for ( int j = 1; j <= text.length(); j++ )
+        {
+            // A match may start anywhere in the text
+            current[0] = 0;
+
+            char c = text.charAt( j - 1 );
+            for ( int i = 1; i <= m; i++ )
+            {
+                char q = query.charAt( i - 1 );
+                int cost = q == c ? 0 : 1;
+                int value = Math.min( Math.min( current[i - 1] + 1, previous[i] + 1 ), previous[i - 1] + cost );
+
+                if ( i > 1 && j > 1 && q == text.charAt( j - 2 ) && query.charAt( i - 2 ) == c )
+                    value = Math.min( value, before[i - 2] + 1 );
+
+                current[i] = value;
+            }
+
+            best = Math.min( best, current[m] );
+            if ( best == 0 )
+                return 0;
+
+            int[] swap = before;
+            before = previous;
+            previous = current;
+            current = swap;
+        }
+
+        return best <= limit ? best : limit + 1;
+    }
+
+    /**
+     * Writes the index.
+     *
+     * @param out The output
+     * @throws IOException
+     */
+    public void write( DataOutput out ) throws IOException
+    {
+        out.writeInt( MAGIC );
+        out.writeInt( VERSION );
+
+        out.writeInt( titles.length );
+        for ( Title title : titles )
+            out.writeUTF( title.id != null ? title.id : "" );
+
+        out.writeInt( entries.length );
+        for ( int i = 0; i < entries.length; i++ )
+        {
+            out.writeInt( entryTitles[i] );
+            out.writeUTF( entries[i] );
+        }
+
+        out.writeInt( trigrams.length );
+        for ( int i = 0; i < trigrams.length; i++ )
+        {
+            out.writeLong( trigrams[i] );
+            out.writeInt( offsets[i + 1] - offsets[i] );
+        }
+
+        for ( int posting : postings )
+            out.writeInt( posting );
+    }
+
+    /**
+     * Reads an index written for the titles.
+     *
+     * @param in      The input
+     * @param catalog The titles the index was built for
+     * @return The index, or null if it was written in a different format or for other titles
+     * @throws IOException
+     */
+    public static TrigramIndex read( DataInput in, List<Title> catalog ) throws IOException
+    {
+        if ( in.readInt() != MAGIC || in.readInt() != VERSION )
+            return null;
+
+        Map<String, Title> ids = new HashMap<>( catalog.size() * 2 );
+        for ( Title title : catalog )
+            ids.put( title.id, title );
+
+        int count = in.readInt();
+        if ( count != catalog.size() )
+            return null;
+
+        Title[] titles = new Title[count];
+        for ( int i = 0; i < count; i++ )
+        {
+            titles[i] = ids.get( in.readUTF() );
+            if ( titles[i] == null )
+                return null;
+        }
+
+        count = in.readInt();
+        int[] entryTitles = new int[count];
+        String[] entries = new String[count];
+        for ( int i = 0; i < count; i++ )
+        {
+            entryTitles[i] = in.readInt();
+            entries[i] = in.readUTF();
+        }
+
+        count = in.readInt();
+        long[] trigrams = new long[count];
+        int[] offsets = new int[count + 1];
+        for ( int i = 0; i < count; i++ )
+        {
+            trigrams[i] = in.readLong();
+            offsets[i + 1] = offsets[i] + in.readInt();
+        }
+
+        int[] postings = new int[offsets[count]];
+        for ( int i = 0; i < postings.length; i++ )
+            postings[i] = in.readInt();
+
+        return new TrigramIndex( titles, entryTitles, entries, trigrams, offsets, postings );
+    }
+
+    /**
+     * The entries containing a trigram while the index is built.
+     */
+    private static class Entries
+    {
+        private int[] values = new int[4];
+        private int size;
+
+        void add( int entry )
+        {
+            if ( size == values.length )
+                values = Arrays.copyOf( values, size * 2 );
+
+            values[size++] = entry;
+        }
+    }
+}
@@ -12,7 +12,7 @@ import java.util.TreeSet;
  * Represents a video that is displayed to the user. It may correspond to multiple containers each
  * representing a file for different encodings.
  */
-public class Video implements Serializable
+public class Video implements Serializable, Cloneable
 {
     /**
      * The bitrate used to determine unplayable videos.
@@ -38,6 +38,22 @@ public class Video implements Serializable
     List<Container> containers = Collections.emptyList();
     public List<Subtitle> subtitles = Collections.emptyList();
 
+    // Attributes derived from the ranked containers
+    private transient boolean derived;
+    private transient List<Container> compatibleContainers;
+    private transient Container download;
+    private transient Container compatibleDownload;
+    private transient String downloadSize;
+    private transient String compatibleDownloadSize;
+    private transient Container casting;
+    private transient boolean streamable;
+    private transient String containerLanguage;
+    private transient String quality;
+    private transient String videoCodecs;
+    private transient String audioCodecs;
+    private transient long modified;
+    private transient long lastModified;
+
     private Integer typeRank( String mimetype )
     {
         if ( "video/mp4".equals( mimetype ) )
@@ -71,6 +87,72 @@ public class Video implements Serializable
             }
 
         } ) );
+
+        derive();
+    }
+
+    /**
+     * Computes the attributes that depend only on the ranked containers, so they can be queried
+     * repeatedly without scanning the containers.
+     */
+    void derive()
+    {
+        List<Container> compatible = new ArrayList<>();
+        for ( Container container : containers )
+            if ( container.isCompatible() )
+                compatible.add( container );
+
+        compatibleContainers = compatible.isEmpty() ? containers : Collections.unmodifiableList( compatible );
+
+        download = findDownload( containers );
+        compatibleDownload = findDownload( compatibleContainers );
+        downloadSize = download != null ? download.getFileSize() : null;
+        compatibleDownloadSize = compatibleDownload != null ? compatibleDownload.getFileSize() : null;
+
+        casting = findCasting();
+
+        Container streaming = getStreaming( false, false );
+        streamable = streaming != null && streaming.bitrate < HIGH_QUALITY_BITRATE;
+
+        containerLanguage = findLanguage();
+
+        ArrayList<String> dimens = new ArrayList<>();
+        ArrayList<String> videos = new ArrayList<>();
+        ArrayList<String> audios = new ArrayList<>();
+        for ( Container container : containers )
+        {
+            if ( container.dimension != null && !dimens.contains( container.dimension ) )
+                dimens.add( container.dimension );
+            if ( container.video != null && !videos.contains( container.video ) )
+                videos.add( container.video );
+            if ( container.audio != null && !audios.contains( container.audio ) )
+                audios.add( container.audio );
+        }
+
+        // Many videos share the same values
+        quality = join( ", ", dimens ).intern();
+        videoCodecs = join( ", ", videos ).intern();
+        audioCodecs = join( ", ", audios ).intern();
+
+        if ( containers.size() > 0 )
+        {
+            modified = Long.MAX_VALUE;
+            lastModified = Long.MIN_VALUE;
+
+            for ( Container container : containers )
+            {
+                modified = Math.min( modified, container.modified );
+                lastModified = Math.max( lastModified, container.modified );
+            }
+        }
+
+        derived = true;
+    }
+
+    private void ensureDerived()
+    {
+        if ( !derived )
+            derive();
     }
 
     public String getTitle()
@@ -187,8 +269,13 @@ public class Video implements Serializable
      */
     public Container getDownload( boolean compatible )
     {
-        List<Container> containers = containers( compatible );
+        ensureDerived();
+
+        return compatible ? compatibleDownload : download;
+    }
 
+    private static Container findDownload( List<Container> containers )
+    {
         // Find first downloadable container
         int i = 0;
         while ( i < containers.size() && !containers.get( i ).canDownload() )
@@ -207,6 +294,13 @@ public class Video implements Serializable
      * @return The container to cast
      */
     public Container getCasting()
+    {
+        ensureDerived();
+
+        return casting;
+    }
+
+    private Container findCasting()
     {
         // Prefer mp4 container
         for ( Container container : containers )
@@ -228,22 +322,34 @@ public class Video implements Serializable
 
     private List<Container> containers( boolean compatible )
     {
-        List<Container> containers = new ArrayList<>();
         if ( compatible )
         {
-            // Filter compatible containers
-            for ( Container container : this.containers )
-                if ( container.isCompatible() )
-                    containers.add( container );
-        }
+            ensureDerived();
 
-        // Look at all containers
-        if ( containers.size() == 0 )
-            containers = this.containers;
+            return compatibleContainers;
+        }
 
         return containers;
     }
 
+    /**
+     * Returns a copy of this video sharing the containers and subtitles, which are not modified
+     * once ranked.
+     *
+     * @return The copy
+     */
+    public Video copy()
+    {
+        try
+        {
+            return (Video) clone();
+        }
+        catch ( CloneNotSupportedException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
     /**
      * Sets whether this video exists in the download directory.
      *
@@ -270,96 +376,88 @@ public class Video implements Serializable
         return title + " " + getDuration();
     }
 
+    /**
+     * Returns the language of the video, or else the languages of its containers. The serialized
+     * language is left unset, as titles may be read on several threads.
+     *
+     * @return The language, or null
+     */
     public String getLanguage()
     {
-        if ( language == null )
-        {
-            TreeSet<String> langs = new TreeSet<>();
-            for ( Container container : containers )
-            {
-                if ( container.language != null )
-                {
-                    String[] languages = container.language.split( "," );
-                    for ( String lang : languages )
-                        langs.add( lang.trim() );
-                }
-            }
+        if ( language != null )
+            return language;
 
-            language = "";
-            for ( String lang : langs )
-            {
-                if ( language.length() > 0 )
-                    language += ", ";
+        ensureDerived();
 
-                language += lang;
+        return containerLanguage;
+    }
+
+    private String findLanguage()
+    {
+        TreeSet<String> langs = new TreeSet<>();
+        for ( Container container : containers )
+        {
+            if ( container.language != null )
+            {
+                String[] languages = container.language.split( "," );
+                for ( String lang : languages )
+                    langs.add( lang.trim() );
             }
         }
 
-        return language;
+        return join( ", ", langs );
     }
 
     public long getLastModified()
     {
-        long modified = containers.get( 0 ).modified;
-
-        for ( Container container : containers )
-            modified = Math.max( modified, container.modified );
+        ensureDerived();
 
-        return modified;
+        return lastModified;
     }
 
     public long getModified()
     {
-        long modified = containers.get( 0 ).modified;
-
-        for ( Container container : containers )
-            modified = Math.min( modified, container.modified );
+        ensureDerived();
 
         return modified;
     }
 
-
     public String getQuality()
     {
-        ArrayList<String> dimens = new ArrayList<>();
-        for ( Container container : containers )
-            if ( !dimens.contains( container.dimension ) )
-                dimens.add( container.dimension );
+        ensureDerived();
 
-        return join( ", ", dimens );
+        return quality;
     }
 
     public String getVideoCodecs()
     {
-        ArrayList<String> codecs = new ArrayList<>();
-        for ( Container container : containers )
-            if ( !codecs.contains( container.video ) )
-                codecs.add( container.video );
+        ensureDerived();
 
-        return join( ", ", codecs );
+        return videoCodecs;
     }
 
     public String getAudioCodecs()
     {
-        ArrayList<String> codecs = new ArrayList<>();
-        for ( Container container : containers )
-            if ( !codecs.contains( container.audio ) )
-                codecs.add( container.audio );
+        ensureDerived();
 
-        return join( ", ", codecs );
+        return audioCodecs;
     }
 
     public String getDownloadSize( boolean compatible )
     {
-        Container container = getDownload( compatible );
+        ensureDerived();
 
-        return container != null ? container.getFileSize() : null;
+        return compatible ? compatibleDownloadSize : downloadSize;
     }
 
     public boolean shouldStream( boolean streamHighQuality )
     {
-        Container streaming = getStreaming( false, false );
-        return streamHighQuality || (streaming != null && streaming.bitrate < HIGH_QUALITY_BITRATE);
+        if ( streamHighQuality )
+            return true;
+
+        ensureDerived();
+
+        return streamable;
     }
 
     public boolean canDownload()
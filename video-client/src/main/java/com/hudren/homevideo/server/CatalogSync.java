@@ -0,0 +1,119 @@
+package com.hudren.homevideo.server;
+
+import android.util.Log;
+
+import com.hudren.homevideo.model.CatalogDelta;
+import com.hudren.homevideo.model.Title;
+
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URLEncoder;
+import java.util.List;
+
+/**
+ * Requests the catalog of videos from the server. When a catalog is loaded, only the changes since
+ * its version are requested, and the full catalog is only downloaded if the server cannot provide
+ * them.
+ */
+class CatalogSync
+{
+    private static final String TAG = "CatalogSync";
+
+    private CatalogSync()
+    {
+    }
+
+    static String getTitlesUrl( String serverUrl )
+    {
+        return serverUrl + "/api/v1/titles";
+    }
+
+    static String getChangesUrl( String serverUrl, String version )
+    {
+        try
+        {
+            return serverUrl + "/api/v1/titles/changes?since=" + URLEncoder.encode( version, "UTF-8" );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            return serverUrl + "/api/v1/titles/changes?since=" + version;
+        }
+    }
+
+    /**
+     * Requests the catalog, or the changes since the version of the loaded catalog.
+     *
+     * @param serverUrl The server url
+     * @param etag      The version of the loaded catalog, or null
+     * @param catalog   The loaded catalog, or null
+     * @return The response, with the updated catalog if the catalog has changed
+     */
+    static HttpUtil.CachingResponse<List<Title>> getTitles( String serverUrl, String etag, List<Title> catalog )
+    {
+        HttpUtil.CachingResponse<List<Title>> response = null;
+
+        // The version only applies to videos that have been loaded
+        if ( catalog == null )
+            etag = null;
+
+        // Only request the changes since the loaded version, if possible
+        else if ( etag != null )
+            response = getChanges( serverUrl, etag, catalog );
+
+        if ( response == null )
+        {
+            HttpUtil.CachingRequest request = new HttpUtil.CachingRequest();
+            request.url = getTitlesUrl( serverUrl );
+            request.etag = etag;
+
+            response = HttpUtil.GET( request, new TitleReader() );
+        }
+
+        return response;
+    }
+
+    /**
+     * Requests the changes to the catalog and applies them to the current videos.
+     *
+     * @param serverUrl The server url
+     * @param version   The version of the current videos
+     * @param catalog   The current videos
+     * @return The updated catalog, or null if the server could not provide the changes
+     */
+    static HttpUtil.CachingResponse<List<Title>> getChanges( String serverUrl, String version, List<Title> catalog )
+    {
+        HttpUtil.CachingRequest request = new HttpUtil.CachingRequest();
+        request.url = getChangesUrl( serverUrl, version );
+        request.etag = version;
+
+        HttpUtil.CachingResponse<CatalogDelta> changes = HttpUtil.GET( request, new DeltaReader() );
+
+        HttpUtil.CachingResponse<List<Title>> response = new HttpUtil.CachingResponse<>();
+        response.status = changes.status;
+        response.etag = changes.etag;
+        response.resizesImages = changes.resizesImages;
+
+        if ( changes.status == HttpURLConnection.HTTP_OK && changes.body != null )
+        {
+            CatalogDelta delta = changes.body;
+            if ( response.etag == null )
+                response.etag = delta.version;
+
+            if ( delta.isEmpty() )
+                response.status = HttpURLConnection.HTTP_NOT_MODIFIED;
+            else
+            {
+                Log.d( TAG, "applying changes to " + catalog.size() + " titles" );
+                response.body = delta.apply( catalog );
+            }
+
+            return response;
+        }
+
+        if ( changes.status == HttpURLConnection.HTTP_NOT_MODIFIED )
+            return response;
+
+        // Server does not support changes for this version
+        return null;
+    }
+}
@@ -0,0 +1,29 @@
+package com.hudren.homevideo.server;
+
+import com.google.gson.stream.JsonReader;
+import com.hudren.homevideo.model.CatalogDelta;
+import com.hudren.homevideo.model.ModelAdapters;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Reads the changes to the titles catalog returned by the server.
+ */
+public class DeltaReader implements HttpUtil.BodyReader<CatalogDelta>
+{
+    @Override
+    public CatalogDelta read( InputStream inputStream ) throws IOException
+    {
+        JsonReader json = new JsonReader( new InputStreamReader( inputStream, "UTF-8" ) );
+        try
+        {
+            return ModelAdapters.DELTA.read( json );
+        }
+        finally
+        {
+            json.close();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.hudren.homevideo.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Opens and releases HTTP connections so that the underlying sockets can be kept alive and reused
+ * for subsequent requests to the same server.
+ * <p>
+ * The platform connection pool keeps idle connections per host; its size and idle eviction time
+ * are bounded through the standard http.* system properties. The pool reads them only once when
+ * it is created, so they are set by the application before any connection is opened, including
+ * those of the image loader and the cast library.
+ */
+public class HttpTransport
+{
+    /**
+     * The time allowed to establish a connection with the server.
+     */
+    static final int CONNECT_TIMEOUT = 5000;
+
+    /**
+     * The time allowed between bytes while reading a response.
+     */
+    static final int READ_TIMEOUT = 15000;
+
+    /**
+     * The maximum number of idle connections kept alive for each host.
+     */
+    private static final int MAX_IDLE_CONNECTIONS = 4;
+
+    /**
+     * The time after which an idle connection is evicted from the pool.
+     */
+    private static final long KEEP_ALIVE_DURATION = 60000;
+
+    /**
+     * The maximum number of bytes read to consume the rest of a response.
+     */
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    private HttpTransport()
+    {
+    }
+
+    /**
+     * Sets the limits of the platform connection pool. Must be called before the first connection
+     * is opened by any part of the application.
+     */
+    public static void configure()
+    {
+        System.setProperty( "http.keepAlive", "true" );
+        System.setProperty( "http.maxConnections", String.valueOf( MAX_IDLE_CONNECTIONS ) );
+        System.setProperty( "http.keepAliveDuration", String.valueOf( KEEP_ALIVE_DURATION ) );
+    }
+
+    /**
+     * Opens a connection to the url with timeouts applied.
+     *
+     * @param url The request url
+     * @return The connection
+     * @throws java.io.IOException
+     */
+    static HttpURLConnection open( String url ) throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL( url ).openConnection();
+        connection.setConnectTimeout( CONNECT_TIMEOUT );
+        connection.setReadTimeout( READ_TIMEOUT );
+
+        return connection;
+    }
+
+    /**
+     * Consumes and closes the remainder of a response so that the connection is returned to the
+     * pool rather than discarded. A remainder larger than MAX_DRAIN_BYTES is left unread, as
+     * opening a new connection is cheaper than downloading it, and the connection must then be
+     * disconnected.
+     *
+     * @param inputStream The response stream, or null
+     * @return True, if the response was fully consumed
+     */
+    static boolean drain( InputStream inputStream )
+    {
+        if ( inputStream == null )
+            return true;
+
+        try
+        {
+            byte[] buffer = new byte[4096];
+            int remaining = MAX_DRAIN_BYTES;
+            int n;
+            while ( (n = inputStream.read( buffer )) != -1 )
+            {
+                // Discard remaining content, unless too large
+                remaining -= n;
+                if ( remaining < 0 )
+                    return false;
+            }
+        }
+        catch ( IOException e )
+        {
+            // Connection failed, it will not be reused
+            return false;
+        }
+
+        try
+        {
+            inputStream.close();
+        }
+        catch ( IOException e )
+        {
+            // Do nothing
+        }
+
+        return true;
+    }
+
+    /**
+     * Releases the connection. A connection whose request did not complete is closed, otherwise
+     * its socket is left open for reuse.
+     *
+     * @param connection The connection, or null
+     * @param completed  True, if the response was fully consumed
+     */
+    static void release( HttpURLConnection connection, boolean completed )
+    {
+        if ( connection != null && !completed )
+            connection.disconnect();
+    }
+}
@@ -3,11 +3,16 @@ package com.hudren.homevideo.server;
 import android.util.Log;
 
 import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
 import java.net.HttpURLConnection;
-import java.net.URL;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 /**
  * HTTP utility class.
@@ -17,6 +22,14 @@ public class HttpUtil
     @SuppressWarnings("unused")
     private static final String TAG = "HttpUtil";
 
+    /**
+     * Sent by servers that return images resized to the width given by the w parameter.
+     */
+    private static final String RESIZES_IMAGES_HEADER = "X-Image-Resize";
+
+    private static final AtomicLong bytesReceived = new AtomicLong();
+    private static final AtomicLong bytesDecoded = new AtomicLong();
+
     /**
      * Returns the response from the server using the GET method.
      *
@@ -25,62 +38,86 @@ public class HttpUtil
      */
     public static String GET( String url )
     {
-        String result = "";
+        CachingRequest request = new CachingRequest();
+        request.url = url;
 
-        HttpURLConnection connection = null;
-        try
-        {
-            connection = (HttpURLConnection) new URL( url ).openConnection();
-            connection.setRequestProperty( "Accept-Charset", "UTF-8" );
+        String body = GET( request ).body;
+
+        return body != null ? body : "";
+    }
 
-            int status = connection.getResponseCode();
-            if ( status == HttpURLConnection.HTTP_OK )
+    /**
+     * Returns the response from the server using the GET method.
+     *
+     * @param request The request
+     * @return The server response
+     */
+    public static CachingResponse<String> GET( CachingRequest request )
+    {
+        return GET( request, new BodyReader<String>()
+        {
+            @Override
+            public String read( InputStream inputStream ) throws IOException
             {
-                InputStream inputStream = connection.getInputStream();
-                if ( inputStream != null )
-                    result = convertInputStreamToString( inputStream );
+                return convertInputStreamToString( inputStream );
             }
-        }
-        catch ( Exception e )
-        {
-            Log.e( TAG, e.getLocalizedMessage() );
-        }
-        finally
-        {
-            if ( connection != null )
-                connection.disconnect();
-        }
-
-        return result;
+        } );
     }
 
     /**
-     * Returns the response from the server using the GET method.
+     * Returns the response from the server using the GET method. The body is decoded directly
+     * from the connection by the reader.
      *
      * @param request The request
+     * @param reader  The reader used to decode the response body
      * @return The server response
      */
-    public static CachingResponse GET( CachingRequest request )
+    public static <T> CachingResponse<T> GET( CachingRequest request, BodyReader<T> reader )
     {
-        CachingResponse response = new CachingResponse();
+        CachingResponse<T> response = new CachingResponse<>();
 
         HttpURLConnection connection = null;
+        boolean completed = false;
         try
         {
-            connection = (HttpURLConnection) new URL( request.url ).openConnection();
+            connection = HttpTransport.open( request.url );
             connection.setRequestProperty( "Accept-Charset", "UTF-8" );
+            connection.setRequestProperty( "Accept-Encoding", "gzip, deflate" );
             if ( request.etag != null )
                 connection.setRequestProperty( "If-None-Match", request.etag );
 
+            boolean drained = true;
             response.status = connection.getResponseCode();
             if ( response.status == HttpURLConnection.HTTP_OK )
             {
                 InputStream inputStream = connection.getInputStream();
                 if ( inputStream != null )
-                    response.body = convertInputStreamToString( inputStream );
+                {
+                    CountingInputStream received = new CountingInputStream( inputStream );
+                    CountingInputStream decoded = new CountingInputStream( decode( received, connection.getContentEncoding() ) );
+                    try
+                    {
+                        // Readers close the stream, which must stay open to be drained
+                        response.body = reader.read( new UnclosableInputStream( decoded ) );
+                    }
+                    finally
+                    {
+                        drained = HttpTransport.drain( decoded );
+
+                        bytesReceived.addAndGet( received.count );
+                        bytesDecoded.addAndGet( decoded.count );
+                        Log.d( TAG, request.url + " received " + received.count + " bytes, decoded " + decoded.count + " bytes" );
+                    }
+                }
             }
+            else if ( response.status < HttpURLConnection.HTTP_BAD_REQUEST )
+                drained = HttpTransport.drain( connection.getInputStream() );
+            else
+                drained = HttpTransport.drain( connection.getErrorStream() );
 
             response.etag = connection.getHeaderField( "Etag" );
+            response.resizesImages = connection.getHeaderField( RESIZES_IMAGES_HEADER ) != null;
+            completed = drained;
         }
         catch ( Exception e )
         {
@@ -88,13 +125,84 @@ public class HttpUtil
         }
         finally
         {
-            if ( connection != null )
-                connection.disconnect();
+            // Keep the connection alive for the next request unless it failed
+            HttpTransport.release( connection, completed );
         }
 
         return response;
     }
 
+    /**
+     * Wraps the input stream to decompress the content encoding used by the server. The deflate
+     * encoding should be zlib wrapped, but some servers send raw deflate data, so the header is
+     * checked to choose the format.
+     *
+     * @param inputStream The input stream
+     * @param encoding    The content encoding header, or null
+     * @return The decoded input stream
+     * @throws java.io.IOException
+     */
+    static InputStream decode( InputStream inputStream, String encoding ) throws IOException
+    {
+        if ( "gzip".equalsIgnoreCase( encoding ) )
+            return new GZIPInputStream( inputStream );
+
+        if ( "deflate".equalsIgnoreCase( encoding ) )
+        {
+            PushbackInputStream in = new PushbackInputStream( inputStream, 2 );
+            byte[] header = new byte[2];
+            int length = 0;
+            while ( length < header.length )
+            {
+                int n = in.read( header, length, header.length - length );
+                if ( n == -1 )
+                    break;
+                length += n;
+            }
+            in.unread( header, 0, length );
+
+            if ( length == header.length && isZlibHeader( header[0] & 0xff, header[1] & 0xff ) )
+                return new InflaterInputStream( in );
+
+            return new InflaterInputStream( in, new Inflater( true ) );
+        }
+
+        return inputStream;
+    }
+
+    /**
+     * Returns whether the bytes are a zlib header, which uses the deflate method and has a valid
+     * check value.
+     *
+     * @param cmf The compression method and flags
+     * @param flg The flags
+     * @return True, if the data is zlib wrapped
+     */
+    private static boolean isZlibHeader( int cmf, int flg )
+    {
+        return (cmf & 0x0f) == 8 && (cmf >> 4) <= 7 && ((cmf << 8) | flg) % 31 == 0;
+    }
+
+    /**
+     * Returns the total number of response body bytes received from the network.
+     *
+     * @return The number of bytes on the wire
+     */
+    public static long getBytesReceived()
+    {
+        return bytesReceived.get();
+    }
+
+    /**
+     * Returns the total number of response body bytes after decompression.
+     *
+     * @return The number of decoded bytes
+     */
+    public static long getBytesDecoded()
+    {
+        return bytesDecoded.get();
+    }
+
     /**
      * Reads an input stream, converting it into a String.
      *
@@ -104,21 +212,31 @@ public class HttpUtil
      */
     private static String convertInputStreamToString( InputStream inputStream ) throws IOException
     {
-        String result = "";
+        StringBuilder result = new StringBuilder();
 
-        BufferedReader bufferedReader = new BufferedReader( new InputStreamReader( inputStream ) );
+        BufferedReader bufferedReader = new BufferedReader( new InputStreamReader( inputStream, "UTF-8" ) );
         try
         {
             String line;
             while ( (line = bufferedReader.readLine()) != null )
-                result += line + "\n";
+                result.append( line ).append( '\n' );
         }
         finally
         {
             bufferedReader.close();
         }
 
-        return result;
+        return result.toString();
+    }
+
+    /**
+     * Decodes a response body directly from the connection input stream.
+     *
+     * @param <T> The decoded type
+     */
+    public interface BodyReader<T>
+    {
+        T read( InputStream inputStream ) throws IOException;
     }
 
     public static class CachingRequest
@@ -127,11 +245,70 @@ public class HttpUtil
         public String etag;
     }
 
-    public static class CachingResponse
+    public static class CachingResponse<T>
     {
         public int status;
         public String etag;
-        public String body;
+        public boolean resizesImages;
+        public T body;
+    }
+
+    /**
+     * Ignores requests to close the stream, so the rest of the response can still be drained.
+     */
+    static class UnclosableInputStream extends FilterInputStream
+    {
+        UnclosableInputStream( InputStream in )
+        {
+            super( in );
+        }
+
+        @Override
+        public void close()
+        {
+            // Closed after the response has been drained
+        }
     }
 
+    /**
+     * Counts the bytes read through the stream.
+     */
+    private static class CountingInputStream extends FilterInputStream
+    {
+        long count;
+
+        CountingInputStream( InputStream in )
+        {
+            super( in );
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = super.read();
+            if ( b != -1 )
+                count++;
+
+            return b;
+        }
+
+        @Override
+        public int read( byte[] buffer, int offset, int length ) throws IOException
+        {
+            int n = super.read( buffer, offset, length );
+            if ( n > 0 )
+                count += n;
+
+            return n;
+        }
+
+        @Override
+        public long skip( long n ) throws IOException
+        {
+            long skipped = super.skip( n );
+            count += skipped;
+
+            return skipped;
+        }
+    }
 }
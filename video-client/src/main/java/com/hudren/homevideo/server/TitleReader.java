@@ -0,0 +1,96 @@
+package com.hudren.homevideo.server;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.hudren.homevideo.model.ModelAdapters;
+import com.hudren.homevideo.model.Title;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the titles catalog as a stream, decoding one title at a time so the complete response body
+ * is never held in memory.
+ */
+public class TitleReader implements HttpUtil.BodyReader<List<Title>>
+{
+    /**
+     * Receives the titles as they are decoded.
+     */
+    public interface Callback
+    {
+        void onTitle( Title title );
+    }
+
+    @Override
+    public List<Title> read( InputStream inputStream ) throws IOException
+    {
+        return read( new InputStreamReader( inputStream, "UTF-8" ) );
+    }
+
+    /**
+     * Reads the complete list of titles.
+     *
+     * @param reader The catalog json
+     * @return The list of titles
+     * @throws IOException
+     */
+    public static List<Title> read( Reader reader ) throws IOException
+    {
+        final List<Title> titles = new ArrayList<>();
+
+        read( reader, new Callback()
+        {
+            @Override
+            public void onTitle( Title title )
+            {
+                titles.add( title );
+            }
+        } );
+
+        return titles;
+    }
+
+    /**
+     * Reads the titles, passing each to the callback as soon as it has been decoded.
+     *
+     * @param reader   The catalog json
+     * @param callback The callback receiving the titles
+     * @throws IOException
+     */
+    public static void read( Reader reader, Callback callback ) throws IOException
+    {
+        JsonReader json = new JsonReader( reader );
+        try
+        {
+            // Empty or null response contains no titles
+            try
+            {
+                if ( json.peek() == JsonToken.NULL )
+                    return;
+            }
+            catch ( EOFException e )
+            {
+                return;
+            }
+
+            json.beginArray();
+            while ( json.hasNext() )
+            {
+                Title title = ModelAdapters.TITLE.read( json );
+                if ( title != null )
+                    callback.onTitle( title );
+            }
+            json.endArray();
+        }
+        finally
+        {
+            json.close();
+        }
+    }
+}
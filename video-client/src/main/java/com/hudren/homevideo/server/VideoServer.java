@@ -15,16 +15,18 @@ import android.os.Environment;
 import android.util.Log;
 import android.widget.Toast;
 
-import com.google.gson.FieldNamingPolicy;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.hudren.homevideo.BuildConfig;
 import com.hudren.homevideo.HomeActivity;
 import com.hudren.homevideo.R;
+import com.hudren.homevideo.VideoApp;
+import com.hudren.homevideo.image.PosterLoader;
+import com.hudren.homevideo.model.ModelAdapters;
 import com.hudren.homevideo.model.Server;
+import com.hudren.homevideo.model.Title;
 import com.hudren.homevideo.model.Version;
 
 import java.net.HttpURLConnection;
+import java.util.List;
 
 /**
  * Provides server discovery and connection. This class will first attempt to connect to the last
@@ -43,6 +45,7 @@ public class VideoServer
     private String name;
     private String url;
     private String etag;
+    private boolean resizesImages;
     private int versionCode;
 
     public VideoServer( HomeActivity activity )
@@ -58,6 +61,8 @@ public class VideoServer
             if ( isEmulator )
                 saveServer( "Local Server", "http://10.0.2.2:8090" );
         }
+
+        updateImageLoader();
     }
 
     /**
@@ -71,6 +76,7 @@ public class VideoServer
         name = prefs.getString( "SERVER_NAME", null );
         url = prefs.getString( "SERVER_URL", null );
         etag = prefs.getString( "TITLES_ETAG", null );
+        resizesImages = prefs.getBoolean( "RESIZES_IMAGES", false );
         versionCode = prefs.getInt( "CLIENT_VERSION", 0 );
     }
 
@@ -85,6 +91,7 @@ public class VideoServer
         prefs.putString( "SERVER_NAME", name );
         prefs.putString( "SERVER_URL", url );
         prefs.putString( "TITLES_ETAG", etag );
+        prefs.putBoolean( "RESIZES_IMAGES", resizesImages );
         prefs.putInt( "CLIENT_VERSION", versionCode );
 
         prefs.apply();
@@ -102,8 +109,36 @@ public class VideoServer
         this.name = name;
         this.url = url;
         etag = null;
+        resizesImages = false;
 
         savePrefs();
+        updateImageLoader();
+    }
+
+    /**
+     * Records whether the server resizes images, which is advertised in its responses.
+     *
+     * @param resizesImages True, if images can be requested at the size displayed
+     */
+    private void setResizesImages( boolean resizesImages )
+    {
+        if ( resizesImages != this.resizesImages )
+        {
+            this.resizesImages = resizesImages;
+
+            savePrefs();
+            updateImageLoader();
+        }
+    }
+
+    /**
+     * Lets the image loader request resized posters from the server if supported.
+     */
+    private void updateImageLoader()
+    {
+        PosterLoader loader = VideoApp.getImageLoader();
+        if ( loader != null )
+            loader.setResizingServer( resizesImages ? url : null );
     }
 
     /**
@@ -118,7 +153,7 @@ public class VideoServer
         Toast.makeText( activity, "Connecting to server " + server, Toast.LENGTH_SHORT ).show();
 
         Log.d( TAG, "url = " + url );
-        new GetTitlesTask( name ).execute( getTitlesRequest() );
+        new GetTitlesTask( name, url, etag ).execute();
     }
 
     /**
@@ -132,28 +167,15 @@ public class VideoServer
                 discoverServer();
 
             else
-                new GetTitlesTask( name ).execute( getTitlesRequest() );
+                new GetTitlesTask( name, url, etag ).execute();
         }
     }
 
-    private HttpUtil.CachingRequest getTitlesRequest()
-    {
-        HttpUtil.CachingRequest request = new HttpUtil.CachingRequest();
-        request.url = getTitlesUrl();
-        request.etag = etag;
-        return request;
-    }
-
     public String getServerUrl()
     {
         return url;
     }
 
-    private String getTitlesUrl()
-    {
-        return url + "/api/v1/titles";
-    }
-
     private String getUpdateUrl()
     {
         return url + "/api/v1/android";
@@ -213,27 +235,40 @@ public class VideoServer
         return network != null && network.isConnected();
     }
 
-    private class GetTitlesTask extends AsyncTask<HttpUtil.CachingRequest, Void, HttpUtil.CachingResponse>
+    private class GetTitlesTask extends AsyncTask<Void, Void, HttpUtil.CachingResponse<List<Title>>>
     {
         private final String name;
+        private final String serverUrl;
+        private final String version;
 
-        private GetTitlesTask( String name )
+        private GetTitlesTask( String name, String serverUrl, String version )
         {
             this.name = name;
+            this.serverUrl = serverUrl;
+            this.version = version;
         }
 
         @Override
-        protected HttpUtil.CachingResponse doInBackground( HttpUtil.CachingRequest... params )
+        protected HttpUtil.CachingResponse<List<Title>> doInBackground( Void... params )
         {
-            return HttpUtil.GET( params[0] );
+            HttpUtil.CachingResponse<List<Title>> response = CatalogSync.getTitles( serverUrl, version, activity.getCatalog() );
+
+            // Persist the catalog while still off the main thread
+            if ( response.status == HttpURLConnection.HTTP_OK && response.body != null )
+                activity.storeTitles( response.body );
+
+            return response;
         }
 
         @Override
-        protected void onPostExecute( HttpUtil.CachingResponse response )
+        protected void onPostExecute( HttpUtil.CachingResponse<List<Title>> response )
         {
+            if ( response.status == HttpURLConnection.HTTP_OK || response.status == HttpURLConnection.HTTP_NOT_MODIFIED )
+                setResizesImages( response.resizesImages );
+
             if ( response.status == HttpURLConnection.HTTP_OK )
             {
-                if ( response.body != null && response.body.length() > 0 )
+                if ( response.body != null )
                 {
                     etag = response.etag;
                     savePrefs();
@@ -242,7 +277,15 @@ public class VideoServer
                 }
             }
             else if ( response.status == HttpURLConnection.HTTP_NOT_MODIFIED )
+            {
+                if ( response.etag != null && !response.etag.equals( etag ) )
+                {
+                    etag = response.etag;
+                    savePrefs();
+                }
+
                 activity.saveTitles( name, null );
+            }
             else
                 discoverServer();
         }
@@ -277,8 +320,7 @@ public class VideoServer
         @Override
         protected void onPostExecute( String json )
         {
-            Gson gson = new GsonBuilder().setFieldNamingPolicy( FieldNamingPolicy.LOWER_CASE_WITH_DASHES ).create();
-            Version version = gson.fromJson( json, Version.class );
+            Version version = ModelAdapters.getGson().fromJson( json, Version.class );
 
             if ( !BuildConfig.DEBUG
                     && BuildConfig.APPLICATION_ID.equals( version.packageName ) // same app
@@ -0,0 +1,10 @@
+package com.hudren.homevideo;
+
+/**
+ * Category of the tests measuring performance against wall-clock or allocation limits. They are
+ * excluded from the unit tests, as their results depend on the machine, and only run when the
+ * build is given the benchmark property: {@code ./gradlew testDebugUnitTest -Pbenchmark}.
+ */
+public interface Benchmark
+{
+}
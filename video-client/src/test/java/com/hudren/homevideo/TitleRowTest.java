@@ -0,0 +1,108 @@
+package com.hudren.homevideo;
+
+import com.hudren.homevideo.model.TestCatalog;
+import com.hudren.homevideo.model.Title;
+import com.hudren.homevideo.model.Video;
+import com.hudren.homevideo.server.TitleReader;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TitleRowTest
+{
+    @Test
+    public void showsThumbnailWhilePosterLoads()
+    {
+        Title title = new Title();
+        title.poster = "posters/alien.jpg";
+        title.thumb = "thumbs/alien.jpg";
+
+        TitleRow row = new TitleRow( title, "English" );
+        assertEquals( VideoApp.serverUrl( "posters/alien.jpg" ), row.getPoster() );
+        assertEquals( VideoApp.serverUrl( "thumbs/alien.jpg" ), row.getThumb() );
+
+        // Without a poster, the thumbnail is the poster
+        title.poster = null;
+        row = new TitleRow( title, "English" );
+        assertEquals( VideoApp.serverUrl( "thumbs/alien.jpg" ), row.getPoster() );
+        assertNull( row.getThumb() );
+    }
+
+    @Test
+    public void buildingRowDoesNotModifyTitle() throws IOException
+    {
+        Title title = TitleReader.read( new StringReader( "[{\"id\":\"amelie\",\"title\":\"Amelie\",\"info\":{\"year\":2001},"
+                + "\"videos\":[{\"title\":\"Amelie\",\"containers\":[{\"filename\":\"amelie.mp4\",\"language\":\"French\"}]}]}]" ) ).get( 0 );
+
+        TitleRow row = new TitleRow( title, "English" );
+
+        // The language of the containers is shown, without being stored in the video
+        assertEquals( "2001    French", row.details );
+        assertNull( title.getFirstVideo().language );
+    }
+
+    /**
+     * Reading a prepared row, as binding does, allocates nothing once the urls are resolved.
+     */
+    @Test
+    @Category( Benchmark.class )
+    public void readingRowsDoesNotAllocate()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue( bean instanceof com.sun.management.ThreadMXBean );
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+
+        List<Title> titles = TestCatalog.titles( 10000 );
+        for ( Title title : titles )
+        {
+            title.rankVideos();
+            for ( Video video : title.videos )
+                video.rankContainers();
+        }
+
+        TitleSorter sorter = new TitleSorter( titles, null ).prepare();
+
+        // Resolve the urls and warm up
+        int[] permutation = sorter.getPermutation( TitlesAdapter.SortOrder.MOST_RECENT );
+        long expected = bind( sorter, permutation );
+
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes( thread );
+        long checksum = 0;
+        for ( int i = 0; i < 10; i++ )
+            checksum += bind( sorter, permutation );
+        long allocated = threads.getThreadAllocatedBytes( thread ) - before;
+
+        // Using the fields read keeps the binds from being optimized away
+        assertEquals( expected * 10, checksum );
+        assertEquals( 0, allocated / 100000 );
+    }
+
+    /**
+     * Reads every field of the rows like bindView does.
+     */
+    private static long bind( TitleSorter sorter, int[] permutation )
+    {
+        long checksum = 0;
+        for ( int ordinal : permutation )
+        {
+            TitleRow row = sorter.getRow( ordinal );
+
+            checksum += row.text.length() + row.details.length();
+            checksum += row.getPoster().length() + row.getThumb().length();
+            if ( row.single && (row.streamable || row.downloadable || row.castable || row.downloaded) )
+                checksum++;
+        }
+
+        return checksum;
+    }
+}
@@ -0,0 +1,78 @@
+package com.hudren.homevideo;
+
+import com.hudren.homevideo.model.Title;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class TitleSorterTest
+{
+    @Test
+    public void keepsItemIdsOfCarriedOverTitles()
+    {
+        List<Title> titles = Arrays.asList( title( "alien" ), title( "heat" ), title( "titanic" ) );
+        TitleSorter sorter = new TitleSorter( titles, null ).prepare();
+
+        List<Title> updated = new ArrayList<>( titles );
+        updated.remove( 1 );
+        updated.add( 0, title( "brazil" ) );
+        TitleSorter next = new TitleSorter( updated, sorter ).prepare();
+
+        assertEquals( sorter.getItemId( 0 ), next.getItemId( next.getOrdinal( "alien" ) ) );
+        assertEquals( sorter.getItemId( 2 ), next.getItemId( next.getOrdinal( "titanic" ) ) );
+
+        // New titles never reuse the id of a removed title
+        long brazil = next.getItemId( next.getOrdinal( "brazil" ) );
+        for ( int i = 0; i < titles.size(); i++ )
+            assertNotEquals( sorter.getItemId( i ), brazil );
+    }
+
+    @Test
+    public void indexesOnlyTheCurrentCatalog()
+    {
+        TitleSorter sorter = new TitleSorter( Arrays.asList( title( "alien" ), title( "heat" ) ), null ).prepare();
+        TitleSorter next = new TitleSorter( Arrays.asList( title( "heat" ) ), sorter ).prepare();
+
+        assertEquals( 0, next.getOrdinal( "heat" ) );
+        assertEquals( -1, next.getOrdinal( "alien" ) );
+    }
+
+    @Test
+    public void sortsChangedTitlesIntoPreviousOrder()
+    {
+        List<Title> titles = new ArrayList<>();
+        for ( int i = 0; i < 200; i++ )
+            titles.add( title( "title" + (i * 7919 % 1000) ) );
+        TitleSorter sorter = new TitleSorter( titles, null ).prepare();
+
+        List<Title> updated = new ArrayList<>( titles );
+        updated.remove( 5 );
+        updated.set( 10, title( "a changed title" ) );
+        updated.add( title( "m added title" ) );
+
+        int[] permutation = new TitleSorter( updated, sorter ).getPermutation( TitlesAdapter.SortOrder.ALPHABETICAL );
+
+        assertEquals( updated.size(), permutation.length );
+        for ( int i = 1; i < permutation.length; i++ )
+        {
+            Title previous = updated.get( permutation[i - 1] );
+            Title title = updated.get( permutation[i] );
+            assertEquals( true, previous.getCollationKey().compareTo( title.getCollationKey() ) <= 0 );
+        }
+    }
+
+    private static Title title( String id )
+    {
+        Title title = new Title();
+        title.id = id;
+        title.title = id;
+
+        return title;
+    }
+}
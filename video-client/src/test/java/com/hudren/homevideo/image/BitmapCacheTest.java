@@ -0,0 +1,32 @@
+package com.hudren.homevideo.image;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BitmapCacheTest
+{
+    @Test
+    public void partitionsAddUpToCacheSize()
+    {
+        int[] budgets = {0, 1, 7, 1000, 1023, 16 * 1024 * 1024, 24 * 1024 * 1024 + 5, Integer.MAX_VALUE};
+        for ( int budget : budgets )
+        {
+            int[] sizes = BitmapCache.partitionSizes( budget );
+
+            assertEquals( 3, sizes.length );
+            assertEquals( budget, (long) sizes[0] + sizes[1] + sizes[2] );
+        }
+    }
+
+    @Test
+    public void prefetchIsCarvedOutOfLargePartition()
+    {
+        int budget = 16 * 1024 * 1024;
+        int[] sizes = BitmapCache.partitionSizes( budget );
+
+        assertEquals( budget / 4, sizes[0] );
+        assertEquals( budget / 8 * 5, sizes[1] );
+        assertEquals( budget / 8, sizes[2] );
+    }
+}
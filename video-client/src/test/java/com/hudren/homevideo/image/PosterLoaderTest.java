@@ -0,0 +1,45 @@
+package com.hudren.homevideo.image;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PosterLoaderTest
+{
+    private static final String SERVER = "http://192.168.1.10:8080";
+    private static final String POSTER = SERVER + "/posters/alien.jpg";
+
+    @Test
+    public void requestsWidthFromResizingServer()
+    {
+        // A 32dp row poster on an xxhdpi screen
+        assertEquals( POSTER + "?w=96", PosterLoader.getSizedUrl( POSTER, 32 * 3, SERVER ) );
+    }
+
+    @Test
+    public void requestsFullImageWithoutResizingServer()
+    {
+        assertEquals( POSTER, PosterLoader.getSizedUrl( POSTER, 96, null ) );
+    }
+
+    @Test
+    public void roundsWidthUp()
+    {
+        assertEquals( POSTER + "?w=96", PosterLoader.getSizedUrl( POSTER, 81, SERVER ) );
+        assertEquals( POSTER + "?w=112", PosterLoader.getSizedUrl( POSTER, 97, SERVER ) );
+        assertEquals( POSTER + "?v=2&w=96", PosterLoader.getSizedUrl( POSTER + "?v=2", 96, SERVER ) );
+    }
+
+    @Test
+    public void keepsUrlsOfOtherServers()
+    {
+        assertEquals( "http://images.example.com/alien.jpg", PosterLoader.getSizedUrl( "http://images.example.com/alien.jpg", 96, SERVER ) );
+        assertEquals( SERVER + "0/posters/alien.jpg", PosterLoader.getSizedUrl( SERVER + "0/posters/alien.jpg", 96, SERVER ) );
+    }
+
+    @Test
+    public void keepsUrlWithoutWidth()
+    {
+        assertEquals( POSTER, PosterLoader.getSizedUrl( POSTER, 0, SERVER ) );
+    }
+}
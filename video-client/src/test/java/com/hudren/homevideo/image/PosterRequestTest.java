@@ -0,0 +1,63 @@
+package com.hudren.homevideo.image;
+
+import android.widget.ImageView.ScaleType;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PosterRequestTest
+{
+    @Test
+    public void subsamplesByLargestPowerOfTwo()
+    {
+        // 1000x1500 poster for a 200x300 view
+        assertEquals( 4, PosterRequest.getSampleSize( 1000, 1500, 200, 300 ) );
+        assertEquals( 2, PosterRequest.getSampleSize( 1000, 1500, 400, 600 ) );
+
+        // Never smaller than the target
+        assertEquals( 2, PosterRequest.getSampleSize( 1000, 1500, 250, 376 ) );
+        assertEquals( 1, PosterRequest.getSampleSize( 1000, 1500, 501, 300 ) );
+        assertEquals( 1, PosterRequest.getSampleSize( 100, 150, 200, 300 ) );
+    }
+
+    @Test
+    public void centerInsideFitsWithinView()
+    {
+        assertSize( 133, 200, 200, 200, 1000, 1500, ScaleType.CENTER_INSIDE );
+        assertSize( 200, 133, 200, 200, 1500, 1000, ScaleType.CENTER_INSIDE );
+        assertSize( 200, 300, 200, 300, 1000, 1500, ScaleType.CENTER_INSIDE );
+    }
+
+    @Test
+    public void centerCropFillsView()
+    {
+        assertSize( 200, 300, 200, 200, 1000, 1500, ScaleType.CENTER_CROP );
+        assertSize( 300, 200, 200, 200, 1500, 1000, ScaleType.CENTER_CROP );
+        assertSize( 400, 600, 400, 100, 1000, 1500, ScaleType.CENTER_CROP );
+    }
+
+    @Test
+    public void fitXyUsesViewSize()
+    {
+        assertSize( 200, 200, 200, 200, 1000, 1500, ScaleType.FIT_XY );
+        assertSize( 1000, 200, 0, 200, 1000, 1500, ScaleType.FIT_XY );
+    }
+
+    @Test
+    public void unlimitedSideFollowsAspectRatio()
+    {
+        assertSize( 200, 300, 0, 300, 1000, 1500, ScaleType.CENTER_INSIDE );
+        assertSize( 200, 300, 200, 0, 1000, 1500, ScaleType.CENTER_INSIDE );
+        assertSize( 1000, 1500, 0, 0, 1000, 1500, ScaleType.CENTER_INSIDE );
+    }
+
+    /**
+     * Asserts the size an image is decoded at, computed like decode does.
+     */
+    private static void assertSize( int expectedWidth, int expectedHeight, int maxWidth, int maxHeight, int width, int height, ScaleType scaleType )
+    {
+        assertEquals( expectedWidth, PosterRequest.getResizedDimension( maxWidth, maxHeight, width, height, scaleType ) );
+        assertEquals( expectedHeight, PosterRequest.getResizedDimension( maxHeight, maxWidth, height, width, scaleType ) );
+    }
+}
@@ -0,0 +1,166 @@
+package com.hudren.homevideo.image;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ReusePoolTest
+{
+    private static final int POSTER_BYTES = 200 * 300 * 4;
+
+    @Test
+    public void flingReusesEvictedPosters()
+    {
+        Pool pool = new Pool( 16 * POSTER_BYTES );
+
+        // A cache of 20 rows, each new row evicting the oldest
+        Deque<Buffer> cached = new ArrayDeque<>();
+        int allocated = 0;
+        long reused = 0;
+        for ( int row = 0; row < 1000; row++ )
+        {
+            // Posters of varying aspect ratio
+            int bytes = POSTER_BYTES - (row % 5) * 1000;
+
+            Buffer buffer = pool.acquire( bytes );
+            if ( buffer == null )
+            {
+                buffer = new Buffer( bytes );
+                allocated++;
+            }
+            else
+                reused += buffer.bytes;
+
+            cached.addLast( buffer );
+            if ( cached.size() > 20 )
+                pool.release( cached.removeFirst() );
+        }
+
+        // Only the first screen and a few smaller posters need new buffers
+        assertTrue( "allocated " + allocated, allocated <= 25 );
+        assertEquals( 1000, pool.getRequestCount() );
+        assertEquals( 1000 - allocated, pool.getHitCount() );
+        assertEquals( 1 - allocated / 1000f, pool.getHitRate(), 0.0001f );
+        assertEquals( reused, pool.getBytesReused() );
+    }
+
+    @Test
+    public void countsBytesOfReusedBuffers()
+    {
+        Pool pool = new Pool( 10000 );
+        assertEquals( 0, pool.getHitRate(), 0 );
+
+        pool.release( new Buffer( 1000 ) );
+        pool.release( new Buffer( 3000 ) );
+        assertEquals( 4000, pool.getSize() );
+
+        // The smallest buffer large enough is reused
+        assertEquals( 1000, pool.acquire( 800 ).bytes );
+        assertEquals( 3000, pool.acquire( 1600 ).bytes );
+        assertNull( pool.acquire( 100 ) );
+
+        assertEquals( 3, pool.getRequestCount() );
+        assertEquals( 2, pool.getHitCount() );
+        assertEquals( 4000, pool.getBytesReused() );
+        assertEquals( 2f / 3, pool.getHitRate(), 0.0001f );
+        assertEquals( 0, pool.getSize() );
+    }
+
+    @Test
+    public void skipsBuffersWastingMemory()
+    {
+        Pool pool = new Pool( 10000 );
+        pool.release( new Buffer( 5000 ) );
+
+        assertNull( pool.acquire( 2000 ) );
+        assertEquals( 0, pool.getHitCount() );
+        assertEquals( 5000, pool.getSize() );
+    }
+
+    @Test
+    public void skipsBuffersNoLongerReusable()
+    {
+        Pool pool = new Pool( 10000 );
+        Buffer recycled = new Buffer( 1000 );
+        Buffer buffer = new Buffer( 1000 );
+        pool.release( recycled );
+        pool.release( buffer );
+
+        recycled.reusable = false;
+        assertSame( buffer, pool.acquire( 1000 ) );
+        assertEquals( 1, pool.getHitCount() );
+        assertEquals( 1000, pool.getBytesReused() );
+    }
+
+    @Test
+    public void poolsDisplayedBufferOnceReleased()
+    {
+        Pool pool = new Pool( 10000 );
+        Buffer buffer = new Buffer( 1000 );
+
+        pool.setDisplayed( null, buffer );
+        pool.setDisplayed( null, buffer );
+        pool.release( buffer );
+        assertEquals( 0, pool.getSize() );
+
+        pool.setDisplayed( buffer, null );
+        assertEquals( 0, pool.getSize() );
+
+        pool.setDisplayed( buffer, null );
+        assertEquals( 1000, pool.getSize() );
+        assertSame( buffer, pool.acquire( 1000 ) );
+    }
+
+    @Test
+    public void dropsLargestBuffersBeyondMaximum()
+    {
+        Pool pool = new Pool( 5000 );
+        pool.release( new Buffer( 1000 ) );
+        pool.release( new Buffer( 3000 ) );
+        pool.release( new Buffer( 2000 ) );
+        assertEquals( 3000, pool.getSize() );
+
+        pool.release( new Buffer( 6000 ) );
+        assertEquals( 3000, pool.getSize() );
+
+        pool.clear();
+        assertEquals( 0, pool.getSize() );
+    }
+
+    private static class Buffer
+    {
+        final int bytes;
+        boolean reusable = true;
+
+        Buffer( int bytes )
+        {
+            this.bytes = bytes;
+        }
+    }
+
+    private static class Pool extends ReusePool<Buffer>
+    {
+        Pool( int maxBytes )
+        {
+            super( maxBytes );
+        }
+
+        @Override
+        int sizeOf( Buffer item )
+        {
+            return item.bytes;
+        }
+
+        @Override
+        boolean isReusable( Buffer item )
+        {
+            return item.reusable;
+        }
+    }
+}
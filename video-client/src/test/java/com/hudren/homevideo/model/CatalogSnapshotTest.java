@@ -0,0 +1,135 @@
+package com.hudren.homevideo.model;
+
+import com.hudren.homevideo.Benchmark;
+import com.hudren.homevideo.server.TitleReader;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CatalogSnapshotTest
+{
+    private static final long LENGTH = 123456;
+    private static final long MODIFIED = 1500000000000L;
+
+    @Test
+    public void restoresRankedTitles() throws IOException
+    {
+        List<Title> titles = rank( TestCatalog.titles( 100 ) );
+        titles.get( 3 ).getFirstVideo().setDownloaded( true );
+
+        List<Title> restored = read( write( titles ), LENGTH, MODIFIED );
+
+        assertNotNull( restored );
+        assertEquals( titles.size(), restored.size() );
+        for ( int i = 0; i < titles.size(); i++ )
+        {
+            Title title = titles.get( i );
+            Title copy = restored.get( i );
+
+            assertEquals( title.id, copy.id );
+            assertEquals( title.getTitle(), copy.getTitle() );
+            assertEquals( title.info.genres, copy.info.genres );
+            assertEquals( title.getFirstVideo().getQuality(), copy.getFirstVideo().getQuality() );
+            assertEquals( title.getFirstVideo().isDownloaded(), copy.getFirstVideo().isDownloaded() );
+            assertTrue( copy.isRanked() );
+        }
+    }
+
+    @Test
+    public void rejectsSnapshotOfReplacedCatalog() throws IOException
+    {
+        byte[] snapshot = write( rank( TestCatalog.titles( 10 ) ) );
+
+        assertNull( read( snapshot, LENGTH + 1, MODIFIED ) );
+        assertNull( read( snapshot, LENGTH, MODIFIED + 1000 ) );
+    }
+
+    @Test
+    public void readsInChunks() throws IOException
+    {
+        byte[] snapshot = write( rank( TestCatalog.titles( 100 ) ) );
+        List<Title> titles = read( snapshot, LENGTH, MODIFIED );
+
+        CatalogSnapshot.Reader reader = CatalogSnapshot.open( new DataInputStream( new ByteArrayInputStream( snapshot ) ), LENGTH, MODIFIED );
+        assertNotNull( reader );
+        assertEquals( 100, reader.getRemaining() );
+
+        List<Title> first = reader.read( 40 );
+        assertEquals( 40, first.size() );
+        assertEquals( 60, reader.getRemaining() );
+        assertEquals( titles.get( 39 ).id, first.get( 39 ).id );
+
+        List<Title> rest = reader.read( 1000 );
+        assertEquals( 60, rest.size() );
+        assertEquals( 0, reader.getRemaining() );
+        assertEquals( titles.get( 40 ).id, rest.get( 0 ).id );
+        assertEquals( titles.get( 99 ).id, rest.get( 59 ).id );
+
+    }
+
+    /**
+     * The snapshot exists to load faster than parsing and ranking the json catalog.
+     */
+    @Test
+    @Category( Benchmark.class )
+    public void readsFasterThanJson() throws IOException
+    {
+        String json = TestCatalog.json( 10000 );
+        byte[] snapshot = write( rank( TitleReader.read( new StringReader( json ) ) ) );
+
+        long jsonTime = Long.MAX_VALUE;
+        long snapshotTime = Long.MAX_VALUE;
+        for ( int i = 0; i < 8; i++ )
+        {
+            long start = System.nanoTime();
+            rank( TitleReader.read( new StringReader( json ) ) );
+            jsonTime = Math.min( jsonTime, System.nanoTime() - start );
+
+            start = System.nanoTime();
+            read( snapshot, LENGTH, MODIFIED );
+            snapshotTime = Math.min( snapshotTime, System.nanoTime() - start );
+        }
+
+        assertTrue( snapshotTime < jsonTime );
+    }
+
+    private static List<Title> rank( List<Title> titles )
+    {
+        for ( Title title : titles )
+        {
+            title.rankVideos();
+            for ( Video video : title.videos )
+                video.rankContainers();
+        }
+
+        return titles;
+    }
+
+    private static byte[] write( List<Title> titles ) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bytes );
+        CatalogSnapshot.write( out, titles, LENGTH, MODIFIED );
+        out.close();
+
+        return bytes.toByteArray();
+    }
+
+    private static List<Title> read( byte[] snapshot, long length, long modified ) throws IOException
+    {
+        return CatalogSnapshot.read( new DataInputStream( new ByteArrayInputStream( snapshot ) ), length, modified );
+    }
+}
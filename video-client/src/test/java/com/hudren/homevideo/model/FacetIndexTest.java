@@ -0,0 +1,120 @@
+package com.hudren.homevideo.model;
+
+import com.hudren.homevideo.Benchmark;
+import com.hudren.homevideo.model.FacetIndex.Facet;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FacetIndexTest
+{
+    @Test
+    public void combinesValuesOfAFacetWithOr()
+    {
+        FacetIndex index = new FacetIndex( Arrays.asList( title( "Drama", 1994, "R" ), title( "Comedy", 1999, "PG" ), title( "War", 2001, "R" ) ) );
+
+        Map<Facet, Set<String>> selection = FacetIndex.emptySelection();
+        selection.put( Facet.GENRE, new HashSet<>( Arrays.asList( "Drama", "Comedy" ) ) );
+
+        assertEquals( 2, index.filter( selection ).cardinality() );
+    }
+
+    @Test
+    public void combinesFacetsWithAnd()
+    {
+        FacetIndex index = new FacetIndex( Arrays.asList( title( "Drama", 1994, "R" ), title( "Comedy", 1999, "PG" ), title( "War", 2001, "R" ) ) );
+
+        Map<Facet, Set<String>> selection = FacetIndex.emptySelection();
+        selection.put( Facet.RATING, Collections.singleton( "R" ) );
+        selection.put( Facet.DECADE, Collections.singleton( "1990s" ) );
+
+        BitSet matches = index.filter( selection );
+        assertEquals( 1, matches.cardinality() );
+        assertTrue( matches.get( 0 ) );
+
+        // Counts of a facet ignore its own selection
+        Map<String, Integer> counts = index.getCounts( selection, Facet.DECADE );
+        assertEquals( Integer.valueOf( 1 ), counts.get( "1990s" ) );
+        assertEquals( Integer.valueOf( 1 ), counts.get( "2000s" ) );
+    }
+
+    @Test
+    public void emptySelectionIsNotFiltered()
+    {
+        assertFalse( FacetIndex.isFiltered( FacetIndex.emptySelection() ) );
+    }
+
+    /**
+     * Toggling a filter recomputes the matches, the counts of every facet and the filtered list,
+     * which must take less than 2 ms on 10k titles.
+     */
+    @Test
+    @Category( Benchmark.class )
+    public void togglesFiltersOnTenThousandTitlesWithinTwoMilliseconds()
+    {
+        List<Title> titles = TestCatalog.titles( 10000 );
+        FacetIndex index = new FacetIndex( titles );
+
+        String[][] toggles = {{"GENRE", "Drama"}, {"RATING", "R"}, {"GENRE", "Comedy"}, {"QUALITY", "1080p"}, {"LANGUAGE", "English"}, {"DECADE", "1990s"}};
+        Map<Facet, Set<String>> selection = FacetIndex.emptySelection();
+
+        // Warm up before measuring
+        for ( int i = 0; i < toggles.length * 20; i++ )
+            toggle( index, titles, selection, toggles[i % toggles.length] );
+
+        long[] times = new long[toggles.length * 50];
+        for ( int i = 0; i < times.length; i++ )
+        {
+            long start = System.nanoTime();
+            toggle( index, titles, selection, toggles[i % toggles.length] );
+            times[i] = System.nanoTime() - start;
+        }
+
+        Arrays.sort( times );
+
+        assertTrue( times[times.length / 2] < 2000000 );
+    }
+
+    private static void toggle( FacetIndex index, List<Title> titles, Map<Facet, Set<String>> selection, String[] toggle )
+    {
+        Facet facet = Facet.valueOf( toggle[0] );
+        Set<String> values = selection.get( facet );
+        if ( values == null )
+        {
+            values = new HashSet<>();
+            selection.put( facet, values );
+        }
+        if ( !values.remove( toggle[1] ) )
+            values.add( toggle[1] );
+
+        BitSet matches = index.filter( selection );
+        for ( Facet counted : Facet.values() )
+            index.getCounts( selection, counted );
+        index.filter( titles, matches );
+    }
+
+    private static Title title( String genre, int year, String rated )
+    {
+        Title title = new Title();
+        title.id = genre;
+        title.title = genre;
+        title.info = new Info();
+        title.info.genres = Collections.singletonList( genre );
+        title.info.year = year;
+        title.info.rated = rated;
+
+        return title;
+    }
+}
@@ -0,0 +1,79 @@
+package com.hudren.homevideo.model;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.hudren.homevideo.Benchmark;
+import com.hudren.homevideo.server.TitleReader;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ModelAdaptersTest
+{
+    private static final Type TITLES = new TypeToken<List<Title>>()
+    {
+    }.getType();
+
+    /**
+     * The reflective binding the adapters replace.
+     */
+    private static final Gson REFLECTIVE = new GsonBuilder()
+            .setFieldNamingPolicy( FieldNamingPolicy.LOWER_CASE_WITH_DASHES )
+            .create();
+
+    @Test
+    public void readsLikeReflectiveBinding() throws IOException
+    {
+        String json = TestCatalog.json( 50 );
+
+        List<Title> expected = REFLECTIVE.fromJson( json, TITLES );
+        List<Title> titles = TitleReader.read( new StringReader( json ) );
+
+        assertEquals( REFLECTIVE.toJson( expected ), REFLECTIVE.toJson( titles ) );
+    }
+
+    @Test
+    public void writesWhatItReads() throws IOException
+    {
+        List<Title> titles = TitleReader.read( new StringReader( TestCatalog.json( 50 ) ) );
+        List<Title> copy = TitleReader.read( new StringReader( ModelAdapters.getGson().toJson( titles, TITLES ) ) );
+
+        assertEquals( REFLECTIVE.toJson( titles ), REFLECTIVE.toJson( copy ) );
+    }
+
+    /**
+     * Parse throughput over a synthetic 10k title catalog, compared with reflective binding.
+     */
+    @Test
+    @Category( Benchmark.class )
+    public void parsesFasterThanReflection() throws IOException
+    {
+        String json = TestCatalog.json( 10000 );
+
+        long adapterTime = Long.MAX_VALUE;
+        long reflectiveTime = Long.MAX_VALUE;
+        for ( int i = 0; i < 8; i++ )
+        {
+            long start = System.nanoTime();
+            List<Title> titles = TitleReader.read( new StringReader( json ) );
+            adapterTime = Math.min( adapterTime, System.nanoTime() - start );
+            assertEquals( 10000, titles.size() );
+
+            start = System.nanoTime();
+            REFLECTIVE.fromJson( json, TITLES );
+            reflectiveTime = Math.min( reflectiveTime, System.nanoTime() - start );
+        }
+
+        assertTrue( adapterTime < reflectiveTime );
+    }
+}
@@ -0,0 +1,189 @@
+package com.hudren.homevideo.model;
+
+import com.hudren.homevideo.Benchmark;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SearchIndexTest
+{
+    @Test
+    public void matchesEveryWordByPrefix()
+    {
+        SearchIndex index = new SearchIndex();
+        index.update( Arrays.asList( title( "alien", "Alien", "Sigourney Weaver" ), title( "aliens", "Aliens", "Sigourney Weaver" ),
+                title( "heat", "Heat", "Al Pacino" ) ) );
+
+        assertEquals( 2, index.search( "ali" ).size() );
+        assertEquals( 1, index.search( "aliens sig" ).size() );
+        assertEquals( "heat", index.search( "pac" ).get( 0 ).id );
+        assertTrue( index.search( "alien pacino" ).isEmpty() );
+    }
+
+    @Test
+    public void updatesChangedTitles()
+    {
+        SearchIndex index = new SearchIndex();
+        List<Title> titles = new ArrayList<>( Arrays.asList( title( "alien", "Alien", null ), title( "heat", "Heat", null ) ) );
+        index.update( titles );
+
+        titles.set( 0, title( "alien", "Alien Resurrection", null ) );
+        titles.remove( 1 );
+        index.update( titles );
+
+        assertEquals( 1, index.size() );
+        assertEquals( 1, index.search( "resur" ).size() );
+        assertTrue( index.search( "heat" ).isEmpty() );
+    }
+
+    /**
+     * Updates only index the changed titles, the results must be those of an index built from
+     * scratch, including after the removed titles are discarded.
+     */
+    @Test
+    public void updatesLikeRebuilding()
+    {
+        List<Title> pool = TestCatalog.titles( 600 );
+        List<Title> titles = new ArrayList<>( pool.subList( 0, 200 ) );
+        String[] queries = {"ka", "lo mi", "zen", "drama", "tor qua", "shoan", "x"};
+
+        SearchIndex index = new SearchIndex();
+        Random random = new Random( 11 );
+        for ( int round = 0; round < 20; round++ )
+        {
+            // Remove many titles in some rounds, so the removed titles are discarded
+            int removals = round % 5 == 4 ? titles.size() * 2 / 3 : random.nextInt( 10 );
+            for ( int i = 0; i < removals && !titles.isEmpty(); i++ )
+                titles.remove( random.nextInt( titles.size() ) );
+
+            for ( int i = 0; i < 30; i++ )
+            {
+                Title title = pool.get( random.nextInt( pool.size() ) );
+                if ( !contains( titles, title.id ) )
+                    titles.add( title );
+            }
+
+            // Replace a title by a copy with another name
+            int replaced = random.nextInt( titles.size() );
+            titles.set( replaced, title( titles.get( replaced ).id, "Renamed " + round, null ) );
+
+            index.update( titles );
+
+            SearchIndex rebuilt = new SearchIndex();
+            rebuilt.update( titles );
+
+            assertEquals( titles.size(), index.size() );
+            assertEquals( 1, index.search( "renamed " + round ).size() );
+            for ( String query : queries )
+                assertEquals( query, rebuilt.search( query ), index.search( query ) );
+        }
+    }
+
+    @Test
+    public void searchesWhileUpdating() throws InterruptedException
+    {
+        final SearchIndex index = new SearchIndex();
+        index.update( Collections.singletonList( title( "alien", "Alien", null ) ) );
+
+        final CountDownLatch updating = new CountDownLatch( 1 );
+        final CountDownLatch done = new CountDownLatch( 1 );
+        Thread updater = new Thread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                // Holds the lock taken by updates
+                synchronized ( index )
+                {
+                    updating.countDown();
+                    try
+                    {
+                        done.await();
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+
+        } );
+        updater.start();
+
+        try
+        {
+            assertTrue( updating.await( 5, TimeUnit.SECONDS ) );
+            assertEquals( 1, index.search( "alien" ).size() );
+        }
+        finally
+        {
+            done.countDown();
+            updater.join();
+        }
+    }
+
+    /**
+     * Keystroke queries on 10k titles must answer well within a 16 ms frame.
+     */
+    @Test
+    @Category( Benchmark.class )
+    public void searchesTenThousandTitlesWithinAFrame()
+    {
+        List<Title> titles = TestCatalog.titles( 10000 );
+
+        SearchIndex index = new SearchIndex();
+        index.update( titles );
+
+        String[] queries = {"k", "ka", "kal", "kalo", "d", "dr drama", "mi ra", "zen tor", "x"};
+        long slowest = 0;
+        for ( String query : queries )
+        {
+            long best = Long.MAX_VALUE;
+            for ( int i = 0; i < 20; i++ )
+            {
+                long start = System.nanoTime();
+                index.search( query );
+                best = Math.min( best, System.nanoTime() - start );
+            }
+
+            slowest = Math.max( slowest, best );
+        }
+
+        assertTrue( slowest < 4000000 );
+    }
+
+    private static boolean contains( List<Title> titles, String id )
+    {
+        for ( Title title : titles )
+            if ( title.id.equals( id ) )
+                return true;
+
+        return false;
+    }
+
+    private static Title title( String id, String name, String actor )
+    {
+        Title title = new Title();
+        title.id = id;
+        title.title = name;
+
+        if ( actor != null )
+        {
+            title.info = new Info();
+            title.info.actors = Collections.singletonList( actor );
+        }
+
+        return title;
+    }
+}
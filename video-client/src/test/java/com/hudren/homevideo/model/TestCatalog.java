@@ -0,0 +1,110 @@
+package com.hudren.homevideo.model;
+
+import com.hudren.homevideo.server.TitleReader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates catalogs resembling those sent by the server, for tests and benchmarks.
+ */
+public class TestCatalog
+{
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ra", "ten", "sho", "vel", "dor", "an", "bri", "qua", "zen", "pe", "tor"};
+    private static final String[] GENRES = {"Drama", "Comedy", "Action", "Horror", "Family", "Documentary", "Sci-Fi", "Romance", "Thriller", "Animation", "Crime", "War"};
+    private static final String[] RATINGS = {"G", "PG", "PG-13", "R", "TV-MA", "TV-14", "NR"};
+    private static final String[] LANGUAGES = {"English", "French", "Spanish", "German", "Japanese", "Korean"};
+    private static final int[] WIDTHS = {720, 1280, 1920, 3840};
+
+    private TestCatalog()
+    {
+    }
+
+    /**
+     * Returns the json of a catalog with the given number of titles, the same for every call.
+     *
+     * @param count The number of titles
+     * @return The catalog json
+     */
+    public static String json( int count )
+    {
+        Random random = new Random( 7 );
+        StringBuilder json = new StringBuilder( count * 1024 );
+
+        json.append( '[' );
+        for ( int i = 0; i < count; i++ )
+        {
+            if ( i > 0 )
+                json.append( ',' );
+
+            String name = words( random, 2 + random.nextInt( 2 ) );
+            json.append( "{\"id\":\"title" ).append( i ).append( "\",\"title\":\"" ).append( name ).append( '"' );
+            json.append( ",\"poster\":\"posters/title" ).append( i ).append( ".jpg\",\"thumb\":\"thumbs/title" ).append( i ).append( ".jpg\"" );
+
+            json.append( ",\"info\":{\"year\":" ).append( 1930 + random.nextInt( 90 ) );
+            json.append( ",\"rated\":\"" ).append( RATINGS[random.nextInt( RATINGS.length )] ).append( '"' );
+            json.append( ",\"plot\":\"" ).append( words( random, 30 ) ).append( '"' );
+            json.append( ",\"genres\":[\"" ).append( GENRES[random.nextInt( GENRES.length )] ).append( "\",\"" ).append( GENRES[random.nextInt( GENRES.length )] ).append( "\"]" );
+            json.append( ",\"directors\":[\"" ).append( words( random, 2 ) ).append( "\"]" );
+            json.append( ",\"actors\":[" );
+            for ( int j = 0; j < 8; j++ )
+                json.append( j > 0 ? ",\"" : "\"" ).append( words( random, 2 ) ).append( '"' );
+            json.append( "],\"languages\":[\"" ).append( LANGUAGES[random.nextInt( LANGUAGES.length )] ).append( "\"]}" );
+
+            int width = WIDTHS[random.nextInt( WIDTHS.length )];
+            json.append( ",\"videos\":[{\"title\":\"" ).append( name ).append( "\",\"duration\":" ).append( 3600 + random.nextInt( 3600 ) );
+            json.append( ",\"language\":\"en\",\"containers\":[" );
+            json.append( container( i, "mp4", "video/mp4", width, random ) ).append( ',' );
+            json.append( container( i, "mkv", "video/x-matroska", width, random ) );
+            json.append( "],\"subtitles\":[{\"title\":\"English\",\"language\":\"en\",\"url\":\"videos/title" ).append( i ).append( ".srt\"}]}]}" );
+        }
+        json.append( ']' );
+
+        return json.toString();
+    }
+
+    /**
+     * Returns a catalog with the given number of titles, the same for every call.
+     *
+     * @param count The number of titles
+     * @return The titles, not ranked
+     */
+    public static List<Title> titles( int count )
+    {
+        try
+        {
+            return TitleReader.read( new StringReader( json( count ) ) );
+        }
+        catch ( IOException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    private static String container( int index, String extension, String mimetype, int width, Random random )
+    {
+        return "{\"filename\":\"title" + index + "." + extension + "\",\"filetype\":\"" + extension
+                + "\",\"size\":" + (500000000L + random.nextInt( 1000000000 )) + ",\"bitrate\":" + (2000000 + random.nextInt( 8000000 ))
+                + ",\"width\":" + width + ",\"height\":" + width * 9 / 16 + ",\"dimension\":\"" + width * 9 / 16 + "p\",\"video\":\"H.264\",\"audio\":\"AAC\""
+                + ",\"modified\":" + (1400000000000L + random.nextInt( 1000000000 )) + ",\"url\":\"videos/title" + index + "." + extension
+                + "\",\"mimetype\":\"" + mimetype + "\"}";
+    }
+
+    private static String words( Random random, int count )
+    {
+        StringBuilder words = new StringBuilder();
+        for ( int i = 0; i < count; i++ )
+        {
+            if ( i > 0 )
+                words.append( ' ' );
+
+            int syllables = 2 + random.nextInt( 2 );
+            for ( int j = 0; j < syllables; j++ )
+                words.append( SYLLABLES[random.nextInt( SYLLABLES.length )] );
+        }
+
+        return words.toString();
+    }
+}
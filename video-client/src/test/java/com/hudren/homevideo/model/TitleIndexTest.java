@@ -0,0 +1,147 @@
+package com.hudren.homevideo.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TitleIndexTest
+{
+    @Test
+    public void indexesSeasonsAndEpisodes()
+    {
+        Title title = series( video( 2, 1, null ), video( 1, 2, "Second" ), video( 1, 1, null ) );
+
+        Info.EpisodeInfo pilot = new Info.EpisodeInfo();
+        pilot.title = "Pilot";
+        Info.SeasonInfo first = new Info.SeasonInfo();
+        first.title = "Beginnings";
+        first.episodes = new HashMap<>();
+        first.episodes.put( 1, pilot );
+        title.info = new Info();
+        title.info.seasons = new HashMap<>();
+        title.info.seasons.put( 1, first );
+
+        assertTrue( title.hasSeasons() );
+        assertFalse( title.hasParts() );
+        assertTrue( title.getParts().isEmpty() );
+
+        List<Season> seasons = title.getSeasons();
+        assertEquals( 2, seasons.size() );
+        assertEquals( "Season 1 - Beginnings", seasons.get( 0 ).getListTitle() );
+        assertEquals( "Season 2", seasons.get( 1 ).getListTitle() );
+
+        // Titles come from the info, or else from the video
+        List<Episode> episodes = title.getEpisodes( 1 );
+        assertEquals( 2, episodes.size() );
+        assertEquals( "1. Pilot", episodes.get( 0 ).getListTitle() );
+        assertEquals( "2. Second", episodes.get( 1 ).getListTitle() );
+        assertEquals( "Episode 1", title.getEpisodes( 2 ).get( 0 ).getListTitle() );
+
+        assertSame( title.videos.get( 1 ), title.getVideo( episodes.get( 1 ) ) );
+        assertSame( title.videos.get( 0 ), title.getVideo( title.getEpisodes( 2 ).get( 0 ) ) );
+    }
+
+    @Test
+    public void looksUpWithoutInfo()
+    {
+        Title title = series( video( 1, 1, "Pilot" ), video( 1, 2, null ) );
+
+        assertEquals( "Season 1", title.getSeasons().get( 0 ).getListTitle() );
+        assertEquals( "1. Pilot", title.getEpisodes( 1 ).get( 0 ).getListTitle() );
+        assertEquals( "Episode 2", title.getEpisodes( 1 ).get( 1 ).getListTitle() );
+    }
+
+    @Test
+    public void looksUpWithMissingSeasonInfo()
+    {
+        Title title = series( video( 1, 1, "Pilot" ) );
+
+        // As restored from a snapshot written without seasons or episodes
+        title.info = new Info();
+        title.info.seasons = null;
+        assertEquals( "1. Pilot", title.getEpisodes( 1 ).get( 0 ).getListTitle() );
+
+        title = series( video( 1, 1, "Pilot" ) );
+        title.info = new Info();
+        title.info.seasons = new HashMap<>();
+        title.info.seasons.put( 1, new Info.SeasonInfo() );
+        title.info.seasons.get( 1 ).episodes = null;
+        assertEquals( "1. Pilot", title.getEpisodes( 1 ).get( 0 ).getListTitle() );
+    }
+
+    @Test
+    public void missingSeasonsAndEpisodesAreEmpty()
+    {
+        Title title = series( video( 1, 1, null ) );
+
+        assertTrue( title.getEpisodes( 3 ).isEmpty() );
+        assertTrue( title.getEpisodes( null ).isEmpty() );
+
+        Episode missing = new Episode();
+        missing.season = 1;
+        missing.index = 5;
+        assertNull( title.getVideo( missing ) );
+    }
+
+    @Test
+    public void keepsFirstVideoOfEpisode()
+    {
+        Title title = series( video( 1, 1, "First" ), video( 1, 1, "Second" ) );
+
+        assertEquals( 1, title.getEpisodes( 1 ).size() );
+        assertSame( title.videos.get( 0 ), title.getVideo( title.getEpisodes( 1 ).get( 0 ) ) );
+    }
+
+    @Test
+    public void indexesParts()
+    {
+        Title title = series( video( null, 2, null ), video( null, 1, null ) );
+
+        assertFalse( title.hasSeasons() );
+        assertTrue( title.hasParts() );
+        assertTrue( title.getSeasons().isEmpty() );
+
+        List<Episode> parts = title.getParts();
+        assertEquals( 2, parts.size() );
+        assertEquals( "Part 1", parts.get( 0 ).getListTitle() );
+        assertSame( title.videos.get( 0 ), title.getVideo( parts.get( 1 ) ) );
+    }
+
+    @Test
+    public void movieHasNoSeasonsOrParts()
+    {
+        Title title = series( video( null, null, null ) );
+
+        assertFalse( title.hasSeasons() );
+        assertFalse( title.hasParts() );
+        assertTrue( title.getParts().isEmpty() );
+    }
+
+    private static Title series( Video... videos )
+    {
+        Title title = new Title();
+        title.id = "series";
+        title.title = "Series";
+        title.videos = Arrays.asList( videos );
+
+        return title;
+    }
+
+    private static Video video( Integer season, Integer episode, String episodeTitle )
+    {
+        Video video = new Video();
+        video.season = season;
+        video.episode = episode;
+        video.episodeTitle = episodeTitle;
+
+        return video;
+    }
+}
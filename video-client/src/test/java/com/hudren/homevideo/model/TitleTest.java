@@ -0,0 +1,34 @@
+package com.hudren.homevideo.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TitleTest
+{
+    @Test
+    public void copySeparatesDownloadStatus()
+    {
+        Title title = TestCatalog.titles( 1 ).get( 0 );
+        title.rankVideos();
+        for ( Video video : title.videos )
+            video.rankContainers();
+
+        Title copy = title.copy();
+        copy.getFirstVideo().setDownloaded( true );
+
+        assertFalse( title.getFirstVideo().isDownloaded() );
+        assertTrue( copy.getFirstVideo().isDownloaded() );
+        assertNotSame( title.videos, copy.videos );
+
+        // Ranking and derived attributes are kept
+        assertTrue( copy.isRanked() );
+        assertSame( title.getFirstVideo().getContainers(), copy.getFirstVideo().getContainers() );
+        assertEquals( title.getFirstVideo().getQuality(), copy.getFirstVideo().getQuality() );
+        assertEquals( title.getCollationKey(), copy.getCollationKey() );
+    }
+}
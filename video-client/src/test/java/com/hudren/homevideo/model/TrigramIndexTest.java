@@ -0,0 +1,157 @@
+package com.hudren.homevideo.model;
+
+import com.hudren.homevideo.Benchmark;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TrigramIndexTest
+{
+    private final List<Title> titles = Arrays.asList( title( "titanic", "Titanic" ), title( "alien", "Alien" ),
+            title( "godfather", "The Godfather" ) );
+
+    private final TrigramIndex index = TrigramIndex.build( titles );
+
+    @Test
+    public void findsMisspelledTitles()
+    {
+        assertFound( "titamic" );
+        assertFound( "titnic" );
+        assertFound( "tittanic" );
+        assertEquals( "godfather", index.search( "godfathr" ).get( 0 ).id );
+    }
+
+    @Test
+    public void findsTransposedLetters()
+    {
+        // A transposition changes up to four trigrams
+        assertFound( "titnaic" );
+        assertFound( "tiatnic" );
+        assertFound( "ittanic" );
+        assertEquals( "godfather", index.search( "godfahter" ).get( 0 ).id );
+    }
+
+    @Test
+    public void rejectsTooManyErrors()
+    {
+        assertTrue( index.search( "tirnaik" ).isEmpty() );
+        assertTrue( index.search( "godfrhtea" ).isEmpty() );
+    }
+
+    /**
+     * The filters skipping texts must not drop a title within the allowed number of errors.
+     */
+    @Test
+    public void findsEveryTitleWithOneError()
+    {
+        List<Title> catalog = TestCatalog.titles( 2000 );
+        TrigramIndex index = TrigramIndex.build( catalog );
+
+        Random random = new Random( 3 );
+        for ( Title title : catalog )
+        {
+            String query = typo( SearchIndex.simplify( title.getTitle() ), random );
+            List<Title> results = index.search( query );
+
+            // Common syllables may match more titles than returned
+            if ( results.size() < 50 )
+                assertTrue( query, results.contains( title ) );
+        }
+    }
+
+    /**
+     * Misspelled queries on 10k titles are searched in the background once typing stops, and must
+     * take a small part of the delay before the search starts.
+     */
+    @Test
+    @Category( Benchmark.class )
+    public void searchesTenThousandTitlesWithinFiftyMilliseconds()
+    {
+        List<Title> catalog = TestCatalog.titles( 10000 );
+        TrigramIndex index = TrigramIndex.build( catalog );
+
+        String[] queries = {"kalo", "kalomi", "kalomj", "tendro", "shovel dro", "brikaqua zn", "qua pe torze", "zenlo miraka", "xylophone"};
+
+        // Warm up before measuring
+        for ( int i = 0; i < 10; i++ )
+            for ( String query : queries )
+                index.search( query );
+
+        long slowest = 0;
+        for ( String query : queries )
+        {
+            long best = Long.MAX_VALUE;
+            for ( int i = 0; i < 10; i++ )
+            {
+                long start = System.nanoTime();
+                index.search( query );
+                best = Math.min( best, System.nanoTime() - start );
+            }
+
+            slowest = Math.max( slowest, best );
+        }
+
+        assertTrue( slowest < 50000000 );
+    }
+
+    @Test
+    public void readsWhatItWrites() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bytes );
+        index.write( out );
+        out.close();
+
+        TrigramIndex copy = TrigramIndex.read( new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ), titles );
+
+        assertEquals( "titanic", copy.search( "titnaic" ).get( 0 ).id );
+    }
+
+    private void assertFound( String query )
+    {
+        List<Title> results = index.search( query );
+
+        assertEquals( query, 1, results.size() );
+        assertEquals( query, "titanic", results.get( 0 ).id );
+    }
+
+    /**
+     * Substitutes, deletes, inserts or transposes a character of the text.
+     */
+    private static String typo( String text, Random random )
+    {
+        int i = 1 + random.nextInt( text.length() - 2 );
+        switch ( random.nextInt( 4 ) )
+        {
+            case 0:
+                return text.substring( 0, i ) + 'x' + text.substring( i + 1 );
+            case 1:
+                return text.substring( 0, i ) + text.substring( i + 1 );
+            case 2:
+                return text.substring( 0, i ) + 'x' + text.substring( i );
+            default:
+                return text.substring( 0, i - 1 ) + text.charAt( i ) + text.charAt( i - 1 ) + text.substring( i + 1 );
+        }
+    }
+
+    private static Title title( String id, String name )
+    {
+        Title title = new Title();
+        title.id = id;
+        title.title = name;
+
+        return title;
+    }
+}
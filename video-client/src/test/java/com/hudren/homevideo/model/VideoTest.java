@@ -0,0 +1,132 @@
+package com.hudren.homevideo.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class VideoTest
+{
+    private static final long GB = 1024L * 1024 * 1024;
+
+    @Test
+    public void derivesAttributesOfRankedContainers()
+    {
+        Container hd = container( "video/x-matroska", 1920, "1080p", "H.264", "AC3", 8 * GB, 12000000, "English, French", 300 );
+        Container sd = container( "video/mp4", 1280, "720p", "H.264", "AAC", 2 * GB, 5000000, "English", 100 );
+        Container raw = container( "video/avi", 640, null, null, null, GB / 2, 2000000, null, 200 );
+
+        Video video = video( raw, sd, hd );
+        video.rankContainers();
+
+        assertEquals( Arrays.asList( hd, sd, raw ), video.getContainers() );
+
+        // Null dimensions and codecs are skipped
+        assertEquals( "1080p, 720p", video.getQuality() );
+        assertEquals( "H.264", video.getVideoCodecs() );
+        assertEquals( "AC3, AAC", video.getAudioCodecs() );
+        assertEquals( "English, French", video.getLanguage() );
+
+        assertEquals( 100, video.getModified() );
+        assertEquals( 300, video.getLastModified() );
+
+        // The full HD file is too large to download
+        assertSame( sd, video.getDownload( false ) );
+        assertSame( sd, video.getDownload( true ) );
+        assertEquals( FormatUtils.sizeOf( sd.size ), video.getDownloadSize( false ) );
+        assertSame( sd, video.getCasting() );
+        assertTrue( video.canDownload() );
+        assertTrue( video.canCast() );
+        assertTrue( video.shouldStream( false ) );
+    }
+
+    @Test
+    public void derivesEmptyValuesWithoutDimensionsOrCodecs()
+    {
+        Video video = video( container( null, 0, null, null, null, GB, 20000000, null, 0 ) );
+        video.rankContainers();
+
+        assertEquals( "", video.getQuality() );
+        assertEquals( "", video.getVideoCodecs() );
+        assertEquals( "", video.getAudioCodecs() );
+        assertEquals( "", video.getLanguage() );
+
+        assertNull( video.getCasting() );
+        assertFalse( video.canCast() );
+        assertFalse( video.shouldStream( false ) );
+        assertTrue( video.shouldStream( true ) );
+    }
+
+    @Test
+    public void derivesNothingWithoutContainers()
+    {
+        Video video = new Video();
+        video.rankContainers();
+
+        assertEquals( "", video.getQuality() );
+        assertNull( video.getDownload( false ) );
+        assertNull( video.getDownloadSize( true ) );
+        assertNull( video.getCasting() );
+        assertFalse( video.shouldStream( false ) );
+    }
+
+    @Test
+    public void derivesUnrankedVideoOnFirstUse()
+    {
+        Video video = video( container( "video/mp4", 1280, "720p", "H.264", "AAC", GB, 5000000, "German", 100 ) );
+
+        assertEquals( "720p", video.getQuality() );
+        assertEquals( "German", video.getLanguage() );
+        assertTrue( video.canCast() );
+    }
+
+    @Test
+    public void sharesSummariesBetweenVideos()
+    {
+        Video first = video( container( "video/mp4", 1280, "720p", "H.264", "AAC", GB, 5000000, null, 0 ) );
+        Video second = video( container( "video/mp4", 1280, new String( "720p" ), "H.264", "AAC", GB, 5000000, null, 0 ) );
+        first.rankContainers();
+        second.rankContainers();
+
+        assertSame( first.getQuality(), second.getQuality() );
+    }
+
+    @Test
+    public void explicitLanguageTakesPrecedence()
+    {
+        Video video = video( container( "video/mp4", 1280, "720p", "H.264", "AAC", GB, 5000000, "English", 0 ) );
+        video.language = "Spanish";
+
+        assertEquals( "Spanish", video.getLanguage() );
+    }
+
+    private static Video video( Container... containers )
+    {
+        Video video = new Video();
+        video.containers = new ArrayList<>( Arrays.asList( containers ) );
+
+        return video;
+    }
+
+    private static Container container( String mimetype, int width, String dimension, String codec, String audio, long size, long bitrate, String language, long modified )
+    {
+        Container container = new Container();
+        container.mimetype = mimetype;
+        container.width = width;
+        container.dimension = dimension;
+        container.video = codec;
+        container.audio = audio;
+        container.size = size;
+        container.bitrate = bitrate;
+        container.language = language;
+        container.modified = modified;
+
+        return container;
+    }
+}
@@ -0,0 +1,146 @@
+package com.hudren.homevideo.server;
+
+import com.hudren.homevideo.model.Title;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DeltaSyncTest
+{
+    private static final String CATALOG = "[{\"id\":\"alien\",\"title\":\"Alien\"},{\"id\":\"titanic\",\"title\":\"Titanic\"}]";
+
+    private static final String CHANGES = "/api/v1/titles/changes";
+
+    private StandInServer server;
+    private List<Title> catalog;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        server = new StandInServer();
+        server.serve( "/api/v1/titles", CATALOG );
+
+        HttpUtil.CachingResponse<List<Title>> response = CatalogSync.getTitles( server.getUrl(), null, null );
+        assertEquals( HttpURLConnection.HTTP_OK, response.status );
+
+        catalog = response.body;
+        assertEquals( 2, catalog.size() );
+    }
+
+    @After
+    public void tearDown()
+    {
+        server.stop();
+    }
+
+    @Test
+    public void appliesAddedChangedAndRemoved() throws IOException
+    {
+        server.serve( CHANGES, "{\"version\":\"2\",\"added\":[{\"id\":\"heat\",\"title\":\"Heat\"}],"
+                + "\"changed\":[{\"id\":\"alien\",\"title\":\"Aliens\"}],\"removed\":[\"titanic\"]}" );
+
+        HttpUtil.CachingResponse<List<Title>> response = CatalogSync.getTitles( server.getUrl(), "1", catalog );
+
+        assertEquals( CHANGES + "?since=1", server.lastUri );
+        assertEquals( "1", server.lastEtag );
+
+        assertEquals( HttpURLConnection.HTTP_OK, response.status );
+        assertEquals( "2", response.etag );
+        assertEquals( 2, response.body.size() );
+        assertEquals( "Aliens", response.body.get( 0 ).getTitle() );
+        assertEquals( "heat", response.body.get( 1 ).id );
+    }
+
+    @Test
+    public void removingEveryTitleIsAnUpdate() throws IOException
+    {
+        server.serve( CHANGES, "{\"version\":\"2\",\"removed\":[\"alien\",\"titanic\"]}" );
+
+        HttpUtil.CachingResponse<List<Title>> response = CatalogSync.getTitles( server.getUrl(), "1", catalog );
+
+        // An emptied catalog must still be saved with the new version
+        assertEquals( HttpURLConnection.HTTP_OK, response.status );
+        assertNotNull( response.body );
+        assertTrue( response.body.isEmpty() );
+        assertEquals( "2", response.etag );
+    }
+
+    @Test
+    public void notModified()
+    {
+        server.serve( CHANGES, HttpURLConnection.HTTP_NOT_MODIFIED );
+        int requests = server.requests;
+
+        HttpUtil.CachingResponse<List<Title>> response = CatalogSync.getTitles( server.getUrl(), "1", catalog );
+
+        assertEquals( HttpURLConnection.HTTP_NOT_MODIFIED, response.status );
+        assertNull( response.body );
+        assertEquals( requests + 1, server.requests );
+    }
+
+    @Test
+    public void emptyDeltaKeepsCatalogWithNewVersion() throws IOException
+    {
+        server.serve( CHANGES, "{\"version\":\"3\"}" );
+        int requests = server.requests;
+
+        HttpUtil.CachingResponse<List<Title>> response = CatalogSync.getTitles( server.getUrl(), "1", catalog );
+
+        assertEquals( HttpURLConnection.HTTP_NOT_MODIFIED, response.status );
+        assertNull( response.body );
+        assertEquals( "3", response.etag );
+        assertEquals( requests + 1, server.requests );
+    }
+
+    @Test
+    public void fallsBackToCatalogWithoutChanges()
+    {
+        int requests = server.requests;
+
+        HttpUtil.CachingResponse<List<Title>> response = CatalogSync.getTitles( server.getUrl(), "1", catalog );
+
+        // The changes are not found, the full catalog is requested
+        assertEquals( requests + 2, server.requests );
+        assertEquals( "/api/v1/titles", server.lastUri );
+        assertEquals( "1", server.lastEtag );
+
+        assertEquals( HttpURLConnection.HTTP_OK, response.status );
+        assertEquals( 2, response.body.size() );
+    }
+
+    @Test
+    public void ignoresVersionWithoutCatalog()
+    {
+        int requests = server.requests;
+
+        HttpUtil.CachingResponse<List<Title>> response = CatalogSync.getTitles( server.getUrl(), "1", null );
+
+        assertEquals( requests + 1, server.requests );
+        assertEquals( "/api/v1/titles", server.lastUri );
+        assertNull( server.lastEtag );
+        assertEquals( HttpURLConnection.HTTP_OK, response.status );
+    }
+
+    @Test
+    public void reportsWhetherServerResizesImages() throws IOException
+    {
+        assertFalse( CatalogSync.getTitles( server.getUrl(), null, null ).resizesImages );
+
+        server.setHeader( "X-Image-Resize", "w" );
+        assertTrue( CatalogSync.getTitles( server.getUrl(), null, null ).resizesImages );
+
+        server.serve( CHANGES, "{\"version\":\"2\"}" );
+        assertTrue( CatalogSync.getTitles( server.getUrl(), "1", catalog ).resizesImages );
+    }
+}
@@ -0,0 +1,152 @@
+package com.hudren.homevideo.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HttpUtilTest
+{
+    private static final String BODY = "[{\"id\":\"titanic\",\"title\":\"Titanic\"},{\"id\":\"alien\",\"title\":\"Alien\"}]";
+
+    @Test
+    public void decodesZlibDeflate() throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write( new DeflaterOutputStream( out ), BODY );
+
+        assertEquals( BODY, read( HttpUtil.decode( new ByteArrayInputStream( out.toByteArray() ), "deflate" ) ) );
+    }
+
+    @Test
+    public void decodesRawDeflate() throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write( new DeflaterOutputStream( out, new Deflater( Deflater.DEFAULT_COMPRESSION, true ) ), BODY );
+
+        assertEquals( BODY, read( HttpUtil.decode( new ByteArrayInputStream( out.toByteArray() ), "deflate" ) ) );
+    }
+
+    @Test
+    public void decodesGzip() throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write( new GZIPOutputStream( out ), BODY );
+
+        assertEquals( BODY, read( HttpUtil.decode( new ByteArrayInputStream( out.toByteArray() ), "gzip" ) ) );
+    }
+
+    @Test
+    public void passesIdentityThrough() throws IOException
+    {
+        assertEquals( BODY, read( HttpUtil.decode( new ByteArrayInputStream( BODY.getBytes( "UTF-8" ) ), null ) ) );
+    }
+
+    @Test
+    public void drainsBodyAfterReaderCloses() throws IOException
+    {
+        // A small remainder is read so the connection can be reused
+        assertEquals( 32000, getFirstByte( 32000 ) );
+    }
+
+    @Test
+    public void abandonsLargeRemainder() throws IOException
+    {
+        // A large remainder is left unread and the connection discarded
+        assertTrue( getFirstByte( 4000000 ) < 200000 );
+    }
+
+    /**
+     * Reads only the first byte of a response, like a reader failing to parse the body.
+     *
+     * @param length The length of the response body
+     * @return The number of bytes received
+     */
+    private static long getFirstByte( int length ) throws IOException
+    {
+        final byte[] body = new byte[length];
+        Arrays.fill( body, (byte) 'x' );
+
+        HttpServer server = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+        server.createContext( "/", new HttpHandler()
+        {
+            @Override
+            public void handle( HttpExchange exchange ) throws IOException
+            {
+                exchange.sendResponseHeaders( 200, body.length );
+                try
+                {
+                    exchange.getResponseBody().write( body );
+                }
+                catch ( IOException e )
+                {
+                    // The client disconnected
+                }
+                exchange.close();
+            }
+
+        } );
+        server.start();
+
+        try
+        {
+            HttpUtil.CachingRequest request = new HttpUtil.CachingRequest();
+            request.url = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+
+            long before = HttpUtil.getBytesReceived();
+            HttpUtil.CachingResponse<Integer> response = HttpUtil.GET( request, new HttpUtil.BodyReader<Integer>()
+            {
+                @Override
+                public Integer read( InputStream inputStream ) throws IOException
+                {
+                    // Read only the start, then close like the readers do
+                    int first = inputStream.read();
+                    inputStream.close();
+                    return first;
+                }
+
+            } );
+
+            assertEquals( 200, response.status );
+            assertEquals( Integer.valueOf( 'x' ), response.body );
+
+            return HttpUtil.getBytesReceived() - before;
+        }
+        finally
+        {
+            server.stop( 0 );
+        }
+    }
+
+    private static void write( OutputStream out, String text ) throws IOException
+    {
+        out.write( text.getBytes( "UTF-8" ) );
+        out.close();
+    }
+
+    private static String read( InputStream in ) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64];
+        int n;
+        while ( (n = in.read( buffer )) != -1 )
+            out.write( buffer, 0, n );
+
+        return out.toString( "UTF-8" );
+    }
+}
@@ -0,0 +1,91 @@
+package com.hudren.homevideo.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Local stand-in for the video server, serving fixed responses by path, or by path and query.
+ */
+class StandInServer
+{
+    private final HttpServer server;
+    private final Map<String, byte[]> bodies = new HashMap<>();
+    private final Map<String, String> headers = new HashMap<>();
+    private final Map<String, Integer> statuses = new HashMap<>();
+
+    int requests;
+    String lastUri;
+    String lastEtag;
+
+    StandInServer() throws IOException
+    {
+        server = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+        server.createContext( "/", new HttpHandler()
+        {
+            @Override
+            public void handle( HttpExchange exchange ) throws IOException
+            {
+                synchronized ( StandInServer.this )
+                {
+                    requests++;
+                    lastUri = exchange.getRequestURI().toString();
+                    lastEtag = exchange.getRequestHeaders().getFirst( "If-None-Match" );
+                }
+
+                for ( Map.Entry<String, String> header : headers.entrySet() )
+                    exchange.getResponseHeaders().set( header.getKey(), header.getValue() );
+
+                // A body served for the query takes precedence
+                byte[] body = bodies.get( exchange.getRequestURI().toString() );
+                if ( body == null )
+                    body = bodies.get( exchange.getRequestURI().getPath() );
+
+                Integer status = statuses.get( exchange.getRequestURI().getPath() );
+                if ( status != null )
+                    exchange.sendResponseHeaders( status, -1 );
+                else if ( body == null )
+                    exchange.sendResponseHeaders( 404, -1 );
+                else
+                {
+                    exchange.sendResponseHeaders( 200, body.length );
+                    exchange.getResponseBody().write( body );
+                }
+
+                exchange.close();
+            }
+
+        } );
+        server.start();
+    }
+
+    void serve( String path, String body ) throws IOException
+    {
+        bodies.put( path, body.getBytes( "UTF-8" ) );
+    }
+
+    void serve( String path, int status )
+    {
+        statuses.put( path, status );
+    }
+
+    void setHeader( String name, String value )
+    {
+        headers.put( name, value );
+    }
+
+    String getUrl()
+    {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    void stop()
+    {
+        server.stop( 0 );
+    }
+}